@@ -0,0 +1,84 @@
+package com.nx.logger.benchmark;
+
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.LogInterface;
+import com.nx.logger.diskLog.DiskLogFormatter;
+import com.nx.logger.diskLog.EncodedLogInterface;
+import com.nx.logger.diskLog.LogBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件日志格式化：无分配的字节编码器与原来的StringBuilder拼接，以及整条日志一次编码
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiskLogFormatterBenchmark {
+
+    private DiskLogFormatter encoded;
+    private DiskLogFormatter stringBuilder;
+    private CountingLogInterface sink;
+    private final List<String> record = Arrays.asList("╔════", "║ Main.onCreate  (Main.java:42)", "╟────",
+            "║ user nx1988 logged in", "╚════");
+
+    @Setup
+    public void setup() {
+        sink = new CountingLogInterface();
+        encoded = DiskLogFormatter.newBuilder().logStrategy(sink).build();
+        //自定义时间格式时不使用编码器
+        stringBuilder = DiskLogFormatter.newBuilder().logStrategy(sink)
+                .dateFormat(new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK)).build();
+    }
+
+    @Benchmark
+    public long encoder() {
+        encoded.log(Logger.DEBUG, "Bench", "user nx1988 logged in after 42 ms");
+        return sink.count;
+    }
+
+    @Benchmark
+    public long stringBuilder() {
+        stringBuilder.log(Logger.DEBUG, "Bench", "user nx1988 logged in after 42 ms");
+        return sink.count;
+    }
+
+    @Benchmark
+    public long encoderRecord() {
+        encoded.logRecord(Logger.DEBUG, "Bench", record);
+        return sink.count;
+    }
+
+    static final class CountingLogInterface implements LogInterface, EncodedLogInterface {
+        long count;
+
+        @Override
+        public void log(int level, String tag, String message) {
+            count += message.length();
+        }
+
+        @Override
+        public void log(int priority, LogBuffer buffer) {
+            count += buffer.length();
+            buffer.recycle();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.nx.logger.benchmark;
+
+import android.util.Log;
+
+import com.nx.logger.LogConfig;
+import com.nx.logger.Logger;
+import com.nx.logger.printer.LoggerPrinter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用线程上一次日志调用的开销：无参数、带参数、被级别过滤，以及多线程竞争。
+ * async=true时测的是调用线程发布事件的开销，格式化在后台线程完成。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    @Param({"0", "1"})
+    public int methodCount;
+
+    private LoggerPrinter printer;
+    private LoggerPrinter filteredPrinter;
+    private final String user = "nx1988";
+    private int count;
+
+    @Setup
+    public void setup() {
+        printer = createPrinter(Logger.VERBOSE);
+        filteredPrinter = createPrinter(Logger.WARN);
+    }
+
+    private LoggerPrinter createPrinter(int level) {
+        LoggerPrinter loggerPrinter = new LoggerPrinter();
+        LogConfig config = loggerPrinter.getLogConfig();
+        config.tag("Bench").methodCount(methodCount).setLogLevel(level).printToFile(false).async(async);
+        if (methodCount == 0) {
+            //methodCount为0时按1处理，用callerInfoLevel关掉调用栈
+            config.callerInfoLevel(Logger.NONE);
+        }
+        loggerPrinter.initLogFormatter();
+        return loggerPrinter;
+    }
+
+    @Benchmark
+    public long d() {
+        printer.d("user logged in");
+        return Log.printed;
+    }
+
+    @Benchmark
+    public long dWithArgs() {
+        printer.d("user %s logged in after %d ms", user, ++count);
+        return Log.printed;
+    }
+
+    @Benchmark
+    public long dFiltered() {
+        filteredPrinter.d("user %s logged in after %d ms", user, ++count);
+        return Log.printed;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long dWithArgsContended() {
+        printer.d("user %s logged in after %d ms", user, 42);
+        return Log.printed;
+    }
+}
@@ -0,0 +1,80 @@
+package com.nx.logger.benchmark;
+
+import com.nx.logger.LogConfig;
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.LogAdapterInterface;
+import com.nx.logger.printer.PrinterLogFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PrinterLogFormatter} 单行无边框输出与带边框、调用栈、追加内容的输出之间的差别
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrinterBenchmark {
+
+    private PrinterLogFormatter formatter;
+    private CountingAdapter adapter;
+    private final List<String> appendList = Arrays.asList("{\"id\":1}", "second part");
+
+    @Setup
+    public void setup() {
+        LogConfig config = new LogConfig();
+        adapter = new CountingAdapter();
+        List<LogAdapterInterface> adapters = new ArrayList<>();
+        adapters.add(adapter);
+        config.setLogAdapterList(adapters);
+        formatter = new PrinterLogFormatter(config);
+    }
+
+    @Benchmark
+    public long unboxed() {
+        formatter.log(Logger.DEBUG, "Bench", 0, false, null, "user logged in");
+        return adapter.count;
+    }
+
+    @Benchmark
+    public long boxed() {
+        formatter.log(Logger.DEBUG, "Bench", 2, false, null, "user logged in");
+        return adapter.count;
+    }
+
+    @Benchmark
+    public long boxedWithAppend() {
+        formatter.log(Logger.DEBUG, "Bench", 2, false, appendList, "user logged in\nsecond line");
+        return adapter.count;
+    }
+
+    static final class CountingAdapter implements LogAdapterInterface {
+        long count;
+
+        @Override
+        public boolean isLoggable(int priority, String tag) {
+            return true;
+        }
+
+        @Override
+        public void log(int priority, String tag, String message) {
+            count += message.length();
+        }
+    }
+}
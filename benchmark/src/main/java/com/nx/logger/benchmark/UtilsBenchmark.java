@@ -0,0 +1,81 @@
+package com.nx.logger.benchmark;
+
+import com.nx.logger.Utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json、Xml和对象格式化输出的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private String json;
+    private String xml;
+    private User user;
+
+    @Setup
+    public void setup() {
+        StringBuilder jsonBuilder = new StringBuilder("{\"users\":[");
+        StringBuilder xmlBuilder = new StringBuilder("<users>");
+        for (int i = 0; i < 20; i++) {
+            if (i > 0) {
+                jsonBuilder.append(',');
+            }
+            jsonBuilder.append("{\"id\":").append(i).append(",\"name\":\"user").append(i)
+                    .append("\",\"tags\":[\"a\",\"b\"],\"active\":true}");
+            xmlBuilder.append("<user id=\"").append(i).append("\"><name>user").append(i)
+                    .append("</name><active>true</active></user>");
+        }
+        json = jsonBuilder.append("]}").toString();
+        xml = xmlBuilder.append("</users>").toString();
+
+        user = new User();
+        for (int i = 0; i < 20; i++) {
+            user.tags.add("tag" + i);
+            user.attributes.put("key" + i, i);
+        }
+    }
+
+    @Benchmark
+    public String parseJsonMessage() {
+        return Utils.parseJsonMessage(json);
+    }
+
+    @Benchmark
+    public String parseXmlMessage() {
+        return Utils.parseXmlMessage(xml);
+    }
+
+    @Benchmark
+    public String parseObjectMessage() {
+        return Utils.parseObjectMessage(user);
+    }
+
+    static final class User {
+        int id = 1;
+        String name = "nx1988";
+        List<String> tags = new ArrayList<>();
+        Map<String, Integer> attributes = new HashMap<>();
+    }
+}
@@ -0,0 +1,40 @@
+package com.nx.logger.printer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageTemplate} 与String.format的对比，放在printer包中以便访问包内的MessageTemplate
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageTemplateBenchmark {
+
+    private static final String FORMAT = "user %s logged in after %d ms, flags %x";
+
+    private final String user = "nx1988";
+    private int count;
+
+    @Benchmark
+    public String messageTemplate() {
+        return MessageTemplate.format(FORMAT, user, ++count, 255);
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format(FORMAT, user, ++count, 255);
+    }
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * 外部存储目录指向java.io.tmpdir下的nxlogger-benchmark
+ */
+public final class Environment {
+
+    private Environment() {
+    }
+
+    public static File getExternalStorageDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "nxlogger-benchmark");
+    }
+}
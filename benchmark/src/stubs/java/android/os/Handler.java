@@ -0,0 +1,89 @@
+package android.os;
+
+public class Handler {
+
+    private final Looper looper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public final Message obtainMessage() {
+        Message msg = Message.obtain();
+        msg.target = this;
+        return msg;
+    }
+
+    public final Message obtainMessage(int what) {
+        return obtainMessage(what, null);
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        Message msg = obtainMessage();
+        msg.what = what;
+        msg.obj = obj;
+        return msg;
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+        Message msg = obtainMessage(what, obj);
+        msg.arg1 = arg1;
+        msg.arg2 = arg2;
+        return msg;
+    }
+
+    public final boolean sendMessage(Message msg) {
+        return sendMessageDelayed(msg, 0);
+    }
+
+    public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+        msg.target = this;
+        looper.enqueue(msg, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+        return true;
+    }
+
+    public final boolean sendMessageAtFrontOfQueue(Message msg) {
+        msg.target = this;
+        looper.enqueue(msg, Long.MIN_VALUE);
+        return true;
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendEmptyMessageDelayed(what, 0);
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        return sendMessageDelayed(obtainMessage(what), delayMillis);
+    }
+
+    public final boolean post(Runnable r) {
+        Message msg = obtainMessage();
+        msg.callback = r;
+        return sendMessage(msg);
+    }
+
+    public final boolean postAtFrontOfQueue(Runnable r) {
+        Message msg = obtainMessage();
+        msg.callback = r;
+        return sendMessageAtFrontOfQueue(msg);
+    }
+
+    public final boolean hasMessages(int what) {
+        return looper.hasMessages(this, what);
+    }
+
+    public final void removeMessages(int what) {
+        looper.removeMessages(this, what);
+    }
+}
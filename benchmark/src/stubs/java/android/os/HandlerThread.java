@@ -0,0 +1,49 @@
+package android.os;
+
+public class HandlerThread extends Thread {
+
+    private Looper looper;
+
+    public HandlerThread(String name) {
+        super(name);
+        setDaemon(true);
+    }
+
+    public HandlerThread(String name, int priority) {
+        this(name);
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            Looper.prepare();
+            looper = Looper.myLooper();
+            notifyAll();
+        }
+        Looper.loop();
+    }
+
+    public synchronized Looper getLooper() {
+        while (looper == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        return looper;
+    }
+
+    public boolean quit() {
+        Looper l = getLooper();
+        if (l != null) {
+            l.quit();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean quitSafely() {
+        return quit();
+    }
+}
@@ -0,0 +1,112 @@
+package android.os;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * 按时间排序的消息队列，行为与Android的Looper一致，足够驱动日志库的后台线程
+ */
+public final class Looper {
+
+    private static final ThreadLocal<Looper> LOCAL_LOOPER = new ThreadLocal<>();
+
+    private final PriorityQueue<Message> queue = new PriorityQueue<>(16, new Comparator<Message>() {
+        @Override
+        public int compare(Message lhs, Message rhs) {
+            if (lhs.when != rhs.when) {
+                return lhs.when < rhs.when ? -1 : 1;
+            }
+            return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    });
+    private final Thread thread;
+    private long sequence;
+    private boolean quit;
+
+    private Looper() {
+        thread = Thread.currentThread();
+    }
+
+    public static void prepare() {
+        LOCAL_LOOPER.set(new Looper());
+    }
+
+    public static Looper myLooper() {
+        return LOCAL_LOOPER.get();
+    }
+
+    public static Looper getMainLooper() {
+        return null;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        while (true) {
+            Message msg = looper.next();
+            if (msg == null) {
+                return;
+            }
+            if (msg.callback != null) {
+                msg.callback.run();
+            } else {
+                msg.target.handleMessage(msg);
+            }
+        }
+    }
+
+    public synchronized void quit() {
+        quit = true;
+        notifyAll();
+    }
+
+    public void quitSafely() {
+        quit();
+    }
+
+    synchronized void enqueue(Message msg, long when) {
+        msg.when = when;
+        msg.sequence = sequence++;
+        queue.add(msg);
+        notifyAll();
+    }
+
+    synchronized boolean hasMessages(Handler handler, int what) {
+        for (Message msg : queue) {
+            if (msg.target == handler && msg.what == what && msg.callback == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void removeMessages(Handler handler, int what) {
+        Iterator<Message> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Message msg = iterator.next();
+            if (msg.target == handler && msg.what == what && msg.callback == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized Message next() {
+        while (!quit) {
+            Message msg = queue.peek();
+            long now = SystemClock.uptimeMillis();
+            if (msg != null && msg.when <= now) {
+                return queue.poll();
+            }
+            try {
+                wait(msg == null ? 0 : Math.max(1, msg.when - now));
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package android.os;
+
+public final class Message {
+
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+
+    Handler target;
+    Runnable callback;
+    long when;
+    long sequence;
+
+    public static Message obtain() {
+        return new Message();
+    }
+
+    public long getWhen() {
+        return when;
+    }
+
+    public void recycle() {
+    }
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+public final class Process {
+
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+    public static final int THREAD_PRIORITY_LOWEST = 19;
+
+    private Process() {
+    }
+
+    public static int myPid() {
+        return 0;
+    }
+
+    public static void setThreadPriority(int priority) {
+    }
+}
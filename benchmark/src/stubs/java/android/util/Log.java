@@ -0,0 +1,49 @@
+package android.util;
+
+/**
+ * 基准测试用的桩实现，只统计输出的字符数，不真正输出
+ */
+public final class Log {
+
+    public static volatile long printed;
+
+    private Log() {
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        printed += msg.length();
+        return msg.length();
+    }
+
+    public static int v(String tag, String msg) {
+        return println(2, tag, msg);
+    }
+
+    public static int d(String tag, String msg) {
+        return println(3, tag, msg);
+    }
+
+    public static int i(String tag, String msg) {
+        return println(4, tag, msg);
+    }
+
+    public static int w(String tag, String msg) {
+        return println(5, tag, msg);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println(5, tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return println(6, tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println(6, tag, msg);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return true;
+    }
+}
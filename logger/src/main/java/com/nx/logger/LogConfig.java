@@ -5,7 +5,9 @@ import com.nx.logger.androidLog.AndroidLogAdapter;
 import com.nx.logger.diskLog.DiskLogAdapter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Log打印默认配置
@@ -19,10 +21,24 @@ public final class LogConfig {
     //显示方法调用栈数量
     private int methodCount = 1;
 
+    //只有大于等于该级别的日志才捕获并显示方法调用栈
+    private int callerInfoLevel = Logger.VERBOSE;
+
     //是否显示线程信息
     private boolean showThreadInfo = true;
     //是否输出到文件
     private boolean printToFile = false;
+    //是否异步输出，异步时格式化和分发都在后台线程完成
+    private boolean async = false;
+    //异步环形缓冲区的槽位数量，会向上取整为2的幂
+    private int asyncBufferSize = 1024;
+    //连续重复日志的合并时间窗口（毫秒），0表示不合并
+    private long repeatTimeout = 0;
+    //是否按线程分别合并，否则所有线程共用一个
+    private boolean repeatPerThread = false;
+    //Logger.object输出的最大嵌套层数和每个集合最多输出的元素数量，0表示不限制
+    private int objectMaxDepth = 0;
+    private int objectMaxSize = 0;
 
 
     private List<LogAdapterInterface> logAdapterList = new ArrayList<>();
@@ -33,6 +49,22 @@ public final class LogConfig {
      */
     private int logLevel = Logger.VERBOSE;
 
+    //按tag单独配置的级别，覆盖logLevel
+    private final Map<String, Integer> tagLevelMap = new HashMap<>();
+    //按adapter单独配置的最低级别
+    private final Map<LogAdapterInterface, Integer> adapterLevelMap = new HashMap<>();
+    //由上面的配置编译出的只读级别表，配置变化时置空，下次使用时重建
+    private volatile LogLevelFilter levelFilter;
+
+    //按级别的采样率，N表示每N条输出1条
+    private final int[] sampleRates = new int[Logger.NONE + 1];
+    //按tag的限流：{每秒条数, 突发条数}
+    private final Map<String, double[]> tagRateLimits = new HashMap<>();
+    private double callSitePermitsPerSecond = 0;
+    private int callSiteBurst = 0;
+    private boolean rateLimited = false;
+    private volatile LogRateLimiter rateLimiter;
+
     public LogConfig() {
         logAdapterList.add(new AndroidLogAdapter());
         logAdapterList.add(new DiskLogAdapter());
@@ -57,14 +89,88 @@ public final class LogConfig {
         return this;
     }
 
+    /**
+     * 低于该级别的日志不捕获方法调用栈，用来省掉调试日志中最昂贵的开销
+     */
+    public LogConfig callerInfoLevel(int callerInfoLevel) {
+        this.callerInfoLevel = callerInfoLevel;
+        return this;
+    }
+
     public LogConfig printToFile(boolean printToFile) {
         this.printToFile = printToFile;
         return this;
     }
 
+    /**
+     * 异步输出：调用线程只捕获线程名、调用栈和参数，格式化和输出在后台线程中完成。
+     * 与同步模式不同，String、基本类型的包装类和枚举参数在后台线程中才格式化；
+     * 其他参数在调用线程中格式化为字符串，之后修改参数对象不影响输出
+     */
+    public LogConfig async(boolean async) {
+        this.async = async;
+        return this;
+    }
+
+    public LogConfig asyncBufferSize(int asyncBufferSize) {
+        if (asyncBufferSize < 2) {
+            asyncBufferSize = 2;
+        }
+        this.asyncBufferSize = asyncBufferSize;
+        return this;
+    }
+
+    /**
+     * 合并连续重复的日志（级别、tag和内容都相同）：第一条正常输出，之后重复的日志先不输出，
+     * 出现不同的日志或超过timeoutMillis时输出一条 "last message repeated N times over Xms"
+     *
+     * @param timeoutMillis 最长合并多久输出一次汇总，小于等于0表示关闭
+     * @param perThread     true时每个线程单独判断是否重复，false时所有线程的日志一起判断
+     */
+    public LogConfig coalesceRepeats(long timeoutMillis, boolean perThread) {
+        this.repeatTimeout = Math.max(timeoutMillis, 0);
+        this.repeatPerThread = perThread;
+        return this;
+    }
+
+    /**
+     * 限制Logger.object输出的大小，超过层数的对象输出为{...}，超过数量的元素被省略
+     *
+     * @param maxDepth 最大嵌套层数，0表示不限制
+     * @param maxSize  每个对象或集合最多输出的元素数量，0表示不限制
+     */
+    public LogConfig objectLimits(int maxDepth, int maxSize) {
+        this.objectMaxDepth = Math.max(maxDepth, 0);
+        this.objectMaxSize = Math.max(maxSize, 0);
+        return this;
+    }
+
     public LogConfig addLogAdapter(LogAdapterInterface logAdapterInterface) {
         if (logAdapterInterface != null && !logAdapterList.contains(logAdapterInterface)) {
             logAdapterList.add(logAdapterInterface);
+            onLevelsChanged();
+        }
+        return this;
+    }
+
+    /**
+     * 单独设置某个tag的日志级别，例如把网络日志提高到WARN而其他日志仍保持DEBUG
+     */
+    public LogConfig tagLevel(String tag, int level) {
+        if (tag != null) {
+            tagLevelMap.put(tag, level);
+            onLevelsChanged();
+        }
+        return this;
+    }
+
+    /**
+     * 单独设置某个adapter的最低级别，例如控制台输出全部日志而文件只记录INFO以上
+     */
+    public LogConfig adapterLevel(LogAdapterInterface adapter, int level) {
+        if (adapter != null) {
+            adapterLevelMap.put(adapter, level);
+            onLevelsChanged();
         }
         return this;
     }
@@ -73,6 +179,10 @@ public final class LogConfig {
         return methodCount;
     }
 
+    public int getCallerInfoLevel() {
+        return callerInfoLevel;
+    }
+
     public boolean isShowThreadInfo() {
         return showThreadInfo;
     }
@@ -81,11 +191,83 @@ public final class LogConfig {
         return logLevel;
     }
 
+    /**
+     * VERBOSE或DEBUG级别的日志每n条只输出1条，n小于等于1时不采样
+     */
+    public LogConfig sample(int priority, int n) {
+        if (priority == Logger.VERBOSE || priority == Logger.DEBUG) {
+            sampleRates[priority] = Math.max(n, 1);
+            rateLimited = true;
+            rateLimiter = null;
+        }
+        return this;
+    }
+
+    /**
+     * 限制某个tag每秒最多输出的日志条数，允许burst条的突发
+     */
+    public LogConfig rateLimit(String tag, double permitsPerSecond, int burst) {
+        if (tag != null && permitsPerSecond > 0) {
+            tagRateLimits.put(tag, new double[]{permitsPerSecond, burst});
+            rateLimited = true;
+            rateLimiter = null;
+        }
+        return this;
+    }
+
+    /**
+     * 限制每个调用位置（以格式字符串的内容区分）每秒最多输出的日志条数，用来防止循环中的日志刷屏。
+     * 拼接生成的消息每次内容不同，不会被限流
+     */
+    public LogConfig callSiteRateLimit(double permitsPerSecond, int burst) {
+        callSitePermitsPerSecond = permitsPerSecond;
+        callSiteBurst = burst;
+        rateLimited = true;
+        rateLimiter = null;
+        return this;
+    }
+
+    /**
+     * @return 没有配置限流和采样时返回null
+     */
+    public LogRateLimiter getRateLimiter() {
+        if (!rateLimited) {
+            return null;
+        }
+        LogRateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            limiter = new LogRateLimiter(sampleRates, tagRateLimits, callSitePermitsPerSecond, callSiteBurst);
+            rateLimiter = limiter;
+        }
+        return limiter;
+    }
+
     public LogConfig setLogLevel(int logLevel) {
         this.logLevel = logLevel;
+        onLevelsChanged();
         return this;
     }
 
+    /**
+     * 级别表置空，下次使用时重建，同时使所有NamedLogger缓存的级别失效
+     */
+    private void onLevelsChanged() {
+        levelFilter = null;
+        LoggerRegistry.invalidate();
+    }
+
+    /**
+     * @return 当前配置对应的只读级别表，打印日志时无锁读取
+     */
+    public LogLevelFilter getLevelFilter() {
+        LogLevelFilter filter = levelFilter;
+        if (filter == null || filter.getAdapterCount() != logAdapterList.size()) {
+            filter = new LogLevelFilter(logLevel, tagLevelMap, logAdapterList, adapterLevelMap);
+            levelFilter = filter;
+        }
+        return filter;
+    }
+
     public String getTag() {
         return tag;
     }
@@ -94,12 +276,37 @@ public final class LogConfig {
         return printToFile;
     }
 
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+
+    public long getRepeatTimeout() {
+        return repeatTimeout;
+    }
+
+    public boolean isRepeatPerThread() {
+        return repeatPerThread;
+    }
+
+    public int getObjectMaxDepth() {
+        return objectMaxDepth;
+    }
+
+    public int getObjectMaxSize() {
+        return objectMaxSize;
+    }
+
     public List<LogAdapterInterface> getLogAdapterList() {
         return logAdapterList;
     }
 
     public void setLogAdapterList(List<LogAdapterInterface> logAdapterList) {
         this.logAdapterList = logAdapterList;
+        onLevelsChanged();
     }
 
     public void setShowThreadInfo(boolean showThreadInfo) {
@@ -0,0 +1,57 @@
+package com.nx.logger;
+
+import com.nx.logger.printer.PrinterInterface;
+
+/**
+ * 崩溃时输出异常并同步写出还在队列中的日志，之后交给原来的 {@link Thread.UncaughtExceptionHandler}。
+ * <p>
+ * 文件日志在后台线程写入，进程崩溃时最后的几条日志往往还没有写入文件，而它们通常是最需要的。
+ * 通过 {@link Logger#installCrashHandler(long)} 安装。
+ */
+public final class LogCrashHandler implements Thread.UncaughtExceptionHandler {
+
+    private static final String CRASH_TAG = "NX_CRASH";
+
+    private final PrinterInterface printer;
+    private final Thread.UncaughtExceptionHandler previous;
+    private volatile long timeoutMillis;
+
+    private LogCrashHandler(PrinterInterface printer, Thread.UncaughtExceptionHandler previous,
+                            long timeoutMillis) {
+        this.printer = printer;
+        this.previous = previous;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 设置为默认的UncaughtExceptionHandler，已经安装过时只更新等待时间
+     *
+     * @param timeoutMillis 崩溃时最多等待日志写出的时间
+     */
+    static synchronized void install(PrinterInterface printer, long timeoutMillis) {
+        Thread.UncaughtExceptionHandler current = Thread.getDefaultUncaughtExceptionHandler();
+        if (current instanceof LogCrashHandler && ((LogCrashHandler) current).printer == printer) {
+            ((LogCrashHandler) current).timeoutMillis = timeoutMillis;
+            return;
+        }
+        Thread.setDefaultUncaughtExceptionHandler(new LogCrashHandler(printer, current, timeoutMillis));
+    }
+
+    @Override
+    public void uncaughtException(Thread thread, Throwable throwable) {
+        try {
+            printer.log(Logger.ERROR, CRASH_TAG, "Uncaught exception in thread " + thread.getName(), throwable);
+            printer.flush(timeoutMillis);
+        } catch (Throwable t) {
+            //日志本身出错时不能影响原来的崩溃处理
+            t.printStackTrace();
+        } finally {
+            if (previous != null) {
+                previous.uncaughtException(thread, throwable);
+            } else {
+                System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+                throwable.printStackTrace();
+            }
+        }
+    }
+}
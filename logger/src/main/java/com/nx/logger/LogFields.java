@@ -0,0 +1,245 @@
+package com.nx.logger;
+
+/**
+ * 一条日志附带的结构化字段（key/value），例如：
+ * <pre>
+ * Logger.atInfo().field("latencyMs", cost).field("ok", true).log("request done");
+ * </pre>
+ * 值按类型保存在基本类型数组中，long、double、boolean不会装箱。
+ * 文本输出（logcat、文件日志）时才渲染为 k=v，二进制文件日志直接按类型写入。
+ */
+public final class LogFields {
+
+    public static final byte TYPE_LONG = 0;
+    public static final byte TYPE_DOUBLE = 1;
+    public static final byte TYPE_BOOLEAN = 2;
+    public static final byte TYPE_STRING = 3;
+
+    //字段的最大数量，超过的字段被忽略
+    private static final int MAX_FIELD_COUNT = 32;
+
+    private String[] keys;
+    private byte[] types;
+    //long、double的raw bits、boolean的0/1
+    private long[] values;
+    //字符串类型的值，只在出现时创建
+    private String[] strings;
+    private int size;
+
+    public LogFields() {
+        this(4);
+    }
+
+    private LogFields(int capacity) {
+        keys = new String[capacity];
+        types = new byte[capacity];
+        values = new long[capacity];
+    }
+
+    public LogFields add(String key, long value) {
+        int i = next(key, TYPE_LONG);
+        if (i >= 0) {
+            values[i] = value;
+        }
+        return this;
+    }
+
+    public LogFields add(String key, double value) {
+        int i = next(key, TYPE_DOUBLE);
+        if (i >= 0) {
+            values[i] = Double.doubleToRawLongBits(value);
+        }
+        return this;
+    }
+
+    public LogFields add(String key, boolean value) {
+        int i = next(key, TYPE_BOOLEAN);
+        if (i >= 0) {
+            values[i] = value ? 1 : 0;
+        }
+        return this;
+    }
+
+    public LogFields add(String key, String value) {
+        int i = next(key, TYPE_STRING);
+        if (i >= 0) {
+            if (strings == null) {
+                strings = new String[keys.length];
+            }
+            strings[i] = value;
+        }
+        return this;
+    }
+
+    /**
+     * @return 新字段的下标，key为null或字段数量已达上限时返回-1
+     */
+    private int next(String key, byte type) {
+        if (key == null || size >= MAX_FIELD_COUNT) {
+            return -1;
+        }
+        if (size == keys.length) {
+            int capacity = Math.min(size * 2, MAX_FIELD_COUNT);
+            String[] largerKeys = new String[capacity];
+            byte[] largerTypes = new byte[capacity];
+            long[] largerValues = new long[capacity];
+            System.arraycopy(keys, 0, largerKeys, 0, size);
+            System.arraycopy(types, 0, largerTypes, 0, size);
+            System.arraycopy(values, 0, largerValues, 0, size);
+            keys = largerKeys;
+            types = largerTypes;
+            values = largerValues;
+            if (strings != null) {
+                String[] largerStrings = new String[capacity];
+                System.arraycopy(strings, 0, largerStrings, 0, size);
+                strings = largerStrings;
+            }
+        }
+        keys[size] = key;
+        types[size] = type;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @return {@link #TYPE_LONG}、{@link #TYPE_DOUBLE}、{@link #TYPE_BOOLEAN} 或 {@link #TYPE_STRING}
+     */
+    public byte getType(int index) {
+        return types[index];
+    }
+
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(values[index]);
+    }
+
+    public boolean getBoolean(int index) {
+        return values[index] != 0;
+    }
+
+    public String getString(int index) {
+        return strings == null ? null : strings[index];
+    }
+
+    /**
+     * 以 k=v 的形式追加所有字段，字段之间用空格分隔。
+     * 字符串值为空或包含空格、'='、'"'、换行时加上双引号
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            out.append(keys[i]).append('=');
+            switch (types[i]) {
+                case TYPE_LONG:
+                    out.append(values[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    out.append(Double.longBitsToDouble(values[i]));
+                    break;
+                case TYPE_BOOLEAN:
+                    out.append(values[i] != 0);
+                    break;
+                default:
+                    appendString(strings[i], out);
+                    break;
+            }
+        }
+        return out;
+    }
+
+    private static void appendString(String value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        if (!needsQuote(value)) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean needsQuote(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || c == '=' || c == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 异步输出或交给其他线程时复制一份
+     */
+    public LogFields copy() {
+        LogFields copy = new LogFields(Math.max(size, 1));
+        System.arraycopy(keys, 0, copy.keys, 0, size);
+        System.arraycopy(types, 0, copy.types, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        if (strings != null) {
+            copy.strings = new String[copy.keys.length];
+            System.arraycopy(strings, 0, copy.strings, 0, size);
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * 清空所有字段，数组保留下来复用
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+            if (strings != null) {
+                strings[i] = null;
+            }
+        }
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(size * 16)).toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.nx.logger;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按2的幂分桶的直方图，第i个桶记录 [2^(i-1), 2^i) 范围内的值，记录时只有一次原子加法，没有锁。
+ * 百分位返回所在桶的上界，误差在2倍以内，足够判断日志开销的量级。
+ */
+public final class LogHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final StripedCounter sum = new StripedCounter();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        sum.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * @param percentile 0到100之间
+     * @return 该百分位所在桶的上界
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(target, 1)) {
+                return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMean() + " p50=" + getPercentile(50)
+                + " p99=" + getPercentile(99) + " max<=" + getPercentile(100);
+    }
+}
@@ -0,0 +1,115 @@
+package com.nx.logger;
+
+import com.nx.logger.androidBase.LogAdapterInterface;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由 {@link LogConfig} 编译出的不可变日志级别表，包含全局级别、按tag的级别和按adapter的级别。
+ * <p>
+ * 配置变化时整体重建，打印日志时只读，不需要加锁。tag表使用开放寻址，String的hashCode有缓存，
+ * 查找时只是一次字段读取和一次引用比较，不会每行都重新计算字符串哈希。
+ */
+public final class LogLevelFilter {
+
+    private final int logLevel;
+    private final String[] tags;
+    private final int[] tagLevels;
+    private final int mask;
+
+    private final LogAdapterInterface[] adapters;
+    private final int[] adapterLevels;
+    //所有adapter中最低的级别，低于它的日志没有任何adapter会输出
+    private final int minAdapterLevel;
+    //全局级别和所有tag级别中最低的，低于它的日志不管tag是什么都不会输出
+    private final int minTagLevel;
+
+    LogLevelFilter(int logLevel, Map<String, Integer> tagLevelMap, List<LogAdapterInterface> adapterList,
+                   Map<LogAdapterInterface, Integer> adapterLevelMap) {
+        this.logLevel = logLevel;
+
+        int capacity = Integer.highestOneBit(Math.max(tagLevelMap.size(), 1) * 2 - 1) << 1;
+        tags = new String[capacity];
+        tagLevels = new int[capacity];
+        mask = capacity - 1;
+        int minTag = logLevel;
+        for (Map.Entry<String, Integer> entry : tagLevelMap.entrySet()) {
+            minTag = Math.min(minTag, entry.getValue());
+            int index = entry.getKey().hashCode() & mask;
+            while (tags[index] != null) {
+                index = (index + 1) & mask;
+            }
+            tags[index] = entry.getKey();
+            tagLevels[index] = entry.getValue();
+        }
+        minTagLevel = minTag;
+
+        adapters = adapterList.toArray(new LogAdapterInterface[adapterList.size()]);
+        adapterLevels = new int[adapters.length];
+        int min = adapters.length == 0 ? Logger.NONE : Integer.MAX_VALUE;
+        for (int i = 0; i < adapters.length; i++) {
+            Integer level = adapterLevelMap.get(adapters[i]);
+            adapterLevels[i] = level != null ? level : Logger.VERBOSE;
+            min = Math.min(min, adapterLevels[i]);
+        }
+        minAdapterLevel = min;
+    }
+
+    /**
+     * @return tag对应的最低级别，没有单独配置时为全局级别
+     */
+    public int getLevel(String tag) {
+        if (tag != null) {
+            int index = tag.hashCode() & mask;
+            String key;
+            while ((key = tags[index]) != null) {
+                if (key == tag || key.equals(tag)) {
+                    return tagLevels[index];
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        return logLevel;
+    }
+
+    /**
+     * 在格式化和捕获调用栈之前调用，判断是否至少有一个adapter会输出该日志
+     */
+    public boolean isLoggable(int priority, String tag) {
+        return priority >= minAdapterLevel && priority >= getLevel(tag);
+    }
+
+    /**
+     * 还不知道tag时的判断（例如链式调用的开始），返回false时该级别的日志一定不会输出
+     */
+    public boolean isEnabled(int priority) {
+        return priority >= minAdapterLevel && priority >= minTagLevel;
+    }
+
+    /**
+     * @return 该adapter的最低级别，未单独配置时为VERBOSE
+     */
+    public int getAdapterLevel(LogAdapterInterface adapter, int indexHint) {
+        if (indexHint >= 0 && indexHint < adapters.length && adapters[indexHint] == adapter) {
+            return adapterLevels[indexHint];
+        }
+        for (int i = 0; i < adapters.length; i++) {
+            if (adapters[i] == adapter) {
+                return adapterLevels[i];
+            }
+        }
+        return Logger.VERBOSE;
+    }
+
+    /**
+     * @return 所有adapter中最低的级别，没有adapter时为NONE
+     */
+    public int getMinAdapterLevel() {
+        return minAdapterLevel;
+    }
+
+    int getAdapterCount() {
+        return adapters.length;
+    }
+}
@@ -0,0 +1,193 @@
+package com.nx.logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 由 {@link LogConfig} 编译出的限流和采样规则，在格式化和捕获调用栈之前执行：
+ * <ul>
+ * <li>采样：VERBOSE、DEBUG级别的日志每N条只输出1条；</li>
+ * <li>按tag限流：每个tag一个令牌桶；</li>
+ * <li>按调用位置限流：以日志的格式字符串作为调用位置，不需要捕获调用栈。格式字符串按内容比较，
+ * 内容相同的不同调用位置共用一个令牌桶；用字符串拼接生成的消息（例如 "id=" + id）每次内容都不同，
+ * 不会被按调用位置限流，需要限流的日志应使用格式字符串加参数。</li>
+ * </ul>
+ * 被抑制的日志只是一次计数器累加。被限流的日志数量在该tag或调用位置下一次放行时以一条汇总日志输出。
+ */
+public final class LogRateLimiter {
+
+    /**
+     * {@link #tryAcquire} 返回该值表示这条日志被抑制
+     */
+    public static final long SUPPRESSED = -1;
+
+    //调用位置令牌桶的数量上限，达到后先移除空闲的令牌桶，仍然没有空间时新的调用位置不限流
+    private static final int MAX_CALL_SITES = 1024;
+    //采样计数器之间相隔一个缓存行
+    private static final int PADDING = 8;
+
+    private final int[] sampleRates;
+    private final AtomicLongArray sampleCounters;
+
+    private final String[] tags;
+    private final TokenBucket[] tagBuckets;
+    private final int mask;
+
+    private final double callSitePermitsPerSecond;
+    private final int callSiteBurst;
+    private final ConcurrentHashMap<String, TokenBucket> callSiteBuckets = new ConcurrentHashMap<>();
+
+    LogRateLimiter(int[] sampleRates, Map<String, double[]> tagLimits, double callSitePermitsPerSecond,
+                   int callSiteBurst) {
+        this.sampleRates = sampleRates.clone();
+        this.sampleCounters = new AtomicLongArray(sampleRates.length * PADDING);
+
+        int capacity = Integer.highestOneBit(Math.max(tagLimits.size(), 1) * 2 - 1) << 1;
+        tags = new String[capacity];
+        tagBuckets = new TokenBucket[capacity];
+        mask = capacity - 1;
+        for (Map.Entry<String, double[]> entry : tagLimits.entrySet()) {
+            int index = entry.getKey().hashCode() & mask;
+            while (tags[index] != null) {
+                index = (index + 1) & mask;
+            }
+            tags[index] = entry.getKey();
+            tagBuckets[index] = new TokenBucket(entry.getValue()[0], (int) entry.getValue()[1]);
+        }
+
+        this.callSitePermitsPerSecond = callSitePermitsPerSecond;
+        this.callSiteBurst = callSiteBurst;
+    }
+
+    /**
+     * @param callSite 日志的格式字符串，可以为null
+     * @return {@link #SUPPRESSED} 表示抑制这条日志；否则为上次放行之后被限流的日志数量，需要时输出汇总
+     */
+    public long tryAcquire(int priority, String tag, String callSite) {
+        if (priority >= 0 && priority < sampleRates.length && sampleRates[priority] > 1
+                && sampleCounters.getAndIncrement(priority * PADDING) % sampleRates[priority] != 0) {
+            LogStats.getInstance().onSuppressed(priority);
+            return SUPPRESSED;
+        }
+
+        TokenBucket tagBucket = getTagBucket(tag);
+        if (tagBucket != null && !tagBucket.tryAcquire()) {
+            LogStats.getInstance().onSuppressed(priority);
+            return SUPPRESSED;
+        }
+        TokenBucket callSiteBucket = callSitePermitsPerSecond > 0 && callSite != null
+                ? getCallSiteBucket(callSite) : null;
+        if (callSiteBucket != null && !callSiteBucket.tryAcquire()) {
+            //没有放行，归还tag的令牌，tag的抑制计数留到下一次真正放行时汇总
+            if (tagBucket != null) {
+                tagBucket.release();
+            }
+            LogStats.getInstance().onSuppressed(priority);
+            return SUPPRESSED;
+        }
+
+        //两个令牌桶都放行后才取出抑制计数
+        long suppressed = 0;
+        if (tagBucket != null) {
+            suppressed += tagBucket.takeSuppressed();
+        }
+        if (callSiteBucket != null) {
+            suppressed += callSiteBucket.takeSuppressed();
+        }
+        return suppressed;
+    }
+
+    private TokenBucket getTagBucket(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        int index = tag.hashCode() & mask;
+        String key;
+        while ((key = tags[index]) != null) {
+            if (key == tag || key.equals(tag)) {
+                return tagBuckets[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return 调用位置的令牌桶，数量已达上限且没有空闲的令牌桶时返回null，不限流
+     */
+    private TokenBucket getCallSiteBucket(String callSite) {
+        TokenBucket bucket = callSiteBuckets.get(callSite);
+        if (bucket == null) {
+            if (callSiteBuckets.size() >= MAX_CALL_SITES) {
+                //只移除令牌已经补满且没有未汇总计数的令牌桶，与新建的令牌桶等价，正在限流的调用位置不受影响
+                long now = System.nanoTime();
+                for (Map.Entry<String, TokenBucket> entry : callSiteBuckets.entrySet()) {
+                    if (entry.getValue().isIdle(now)) {
+                        callSiteBuckets.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (callSiteBuckets.size() >= MAX_CALL_SITES) {
+                    return null;
+                }
+            }
+            bucket = new TokenBucket(callSitePermitsPerSecond, callSiteBurst);
+            TokenBucket previous = callSiteBuckets.putIfAbsent(callSite, bucket);
+            if (previous != null) {
+                bucket = previous;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * 无锁令牌桶（GCRA算法）：只记录理论上下一个令牌可用的时间，放行时一次CAS
+     */
+    private static final class TokenBucket {
+        private final long interval;
+        private final long tolerance;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong suppressed = new AtomicLong();
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            interval = Math.max((long) (1000000000L / Math.max(permitsPerSecond, 1e-9)), 1);
+            tolerance = interval * Math.max(burst, 1);
+        }
+
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long start = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+                long next = start + interval;
+                if (next - now > tolerance) {
+                    suppressed.incrementAndGet();
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(tat, next)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 归还刚刚取得的令牌
+         */
+        void release() {
+            theoreticalArrival.addAndGet(-interval);
+        }
+
+        /**
+         * @return 令牌已经补满且没有未汇总的抑制计数
+         */
+        boolean isIdle(long now) {
+            long tat = theoreticalArrival.get();
+            return (tat == Long.MIN_VALUE || tat - now <= 0) && suppressed.get() == 0;
+        }
+
+        long takeSuppressed() {
+            return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.nx.logger;
+
+/**
+ * 日志库自身的运行统计，用来判断日志的开销以及是否丢失了日志。
+ * <p>
+ * 所有记录方法都只是分段计数器上的一次原子加法，不加锁，可以在任意线程中调用。
+ * 使用 {@link #getInstance()} 获取，例如定期上报 {@link #toString()} 的内容。
+ */
+public final class LogStats {
+
+    private static final LogStats INSTANCE = new LogStats();
+
+    private static final int LEVEL_COUNT = Logger.NONE + 1;
+
+    private final StripedCounter[] accepted = newCounters(LEVEL_COUNT);
+    private final StripedCounter[] filtered = newCounters(LEVEL_COUNT);
+    private final StripedCounter[] dropped = newCounters(LEVEL_COUNT);
+    //被限流或采样抑制的日志
+    private final StripedCounter[] suppressed = newCounters(LEVEL_COUNT);
+
+    //已交给文件写入线程但还没有处理的日志数量
+    private final StripedCounter pendingRecords = new StripedCounter();
+    private final StripedCounter bytesWritten = new StripedCounter();
+    private final StripedCounter filesRotated = new StripedCounter();
+    private final StripedCounter ioErrors = new StripedCounter();
+
+    //日志从交给写入线程到被写入线程处理的时间（毫秒）
+    private final LogHistogram writeLatency = new LogHistogram();
+    //调用线程在一次日志调用中花费的时间（纳秒），只统计未被过滤的日志
+    private final LogHistogram callerTime = new LogHistogram();
+
+    private volatile Throwable lastIoError;
+
+    private LogStats() {
+    }
+
+    public static LogStats getInstance() {
+        return INSTANCE;
+    }
+
+    private static StripedCounter[] newCounters(int count) {
+        StripedCounter[] counters = new StripedCounter[count];
+        for (int i = 0; i < count; i++) {
+            counters[i] = new StripedCounter();
+        }
+        return counters;
+    }
+
+    private static int levelIndex(int priority) {
+        return priority >= 0 && priority < LEVEL_COUNT ? priority : 0;
+    }
+
+    public void onAccepted(int priority) {
+        accepted[levelIndex(priority)].increment();
+    }
+
+    public void onFiltered(int priority) {
+        filtered[levelIndex(priority)].increment();
+    }
+
+    public void onDropped(int priority) {
+        dropped[levelIndex(priority)].increment();
+    }
+
+    public void onSuppressed(int priority) {
+        suppressed[levelIndex(priority)].increment();
+    }
+
+    /**
+     * 已在写入队列中的日志被丢弃（例如为新日志腾出空间）
+     */
+    public void onEvicted(int priority) {
+        pendingRecords.add(-1);
+        dropped[levelIndex(priority)].increment();
+    }
+
+    public void onEnqueued() {
+        pendingRecords.increment();
+    }
+
+    /**
+     * @param latencyMillis 从交给写入线程到开始处理的毫秒数
+     */
+    public void onDequeued(long latencyMillis) {
+        pendingRecords.add(-1);
+        writeLatency.record(latencyMillis);
+    }
+
+    public void onBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void onRotated() {
+        filesRotated.increment();
+    }
+
+    public void onIoError(Throwable error) {
+        ioErrors.increment();
+        lastIoError = error;
+    }
+
+    public void recordCallerTime(long nanos) {
+        callerTime.record(nanos);
+    }
+
+    public long getAccepted(int priority) {
+        return accepted[levelIndex(priority)].sum();
+    }
+
+    public long getFiltered(int priority) {
+        return filtered[levelIndex(priority)].sum();
+    }
+
+    public long getDropped(int priority) {
+        return dropped[levelIndex(priority)].sum();
+    }
+
+    public long getSuppressed(int priority) {
+        return suppressed[levelIndex(priority)].sum();
+    }
+
+    public long getQueueDepth() {
+        return pendingRecords.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getFilesRotated() {
+        return filesRotated.sum();
+    }
+
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+
+    public Throwable getLastIoError() {
+        return lastIoError;
+    }
+
+    public LogHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public LogHistogram getCallerTime() {
+        return callerTime;
+    }
+
+    /**
+     * 清空所有统计，队列深度除外（它反映的是当前状态而不是累计值）
+     */
+    public void reset() {
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            accepted[i].reset();
+            filtered[i].reset();
+            dropped[i].reset();
+            suppressed[i].reset();
+        }
+        bytesWritten.reset();
+        filesRotated.reset();
+        ioErrors.reset();
+        writeLatency.reset();
+        callerTime.reset();
+        lastIoError = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LogStats{");
+        for (int priority = Logger.VERBOSE; priority <= Logger.ASSERT; priority++) {
+            builder.append(Utils.logLevel(priority))
+                    .append("[accepted=").append(getAccepted(priority))
+                    .append(" filtered=").append(getFiltered(priority))
+                    .append(" dropped=").append(getDropped(priority))
+                    .append(" suppressed=").append(getSuppressed(priority))
+                    .append("] ");
+        }
+        builder.append("queueDepth=").append(getQueueDepth())
+                .append(" bytesWritten=").append(getBytesWritten())
+                .append(" filesRotated=").append(getFilesRotated())
+                .append(" ioErrors=").append(getIoErrors())
+                .append(" writeLatencyMs{").append(writeLatency).append('}')
+                .append(" callerTimeNs{").append(callerTime).append('}')
+                .append('}');
+        return builder.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.nx.logger;
 
+import com.nx.logger.printer.LogBuilder;
 import com.nx.logger.printer.LoggerPrinter;
 import com.nx.logger.printer.PrinterInterface;
 
@@ -99,6 +100,61 @@ public final class Logger {
         return printer.prinToFile(printToFile);
     }
 
+    /**
+     * 开始一条日志的链式构造，例如 Logger.atInfo().tag("net").append("url: %s", url).log("done")。
+     * 级别被关闭时后续的append、格式化都不会执行
+     */
+    public static LogBuilder at(int priority) {
+        return printer.at(priority);
+    }
+
+    public static LogBuilder atVerbose() {
+        return printer.at(VERBOSE);
+    }
+
+    public static LogBuilder atDebug() {
+        return printer.at(DEBUG);
+    }
+
+    public static LogBuilder atInfo() {
+        return printer.at(INFO);
+    }
+
+    public static LogBuilder atWarn() {
+        return printer.at(WARN);
+    }
+
+    public static LogBuilder atError() {
+        return printer.at(ERROR);
+    }
+
+    /**
+     * 获取按模块区分的日志，名字以'.'分隔组成层级，同一个名字总是返回同一个对象，例如 Logger.get("net.http")
+     *
+     * @param name 为null或""时返回根logger
+     */
+    public static NamedLogger get(String name) {
+        return LoggerRegistry.get(printer, name);
+    }
+
+    /**
+     * 同步写出所有还没有输出的日志（异步缓冲区、文件写入队列、重复日志的汇总）并落盘，用于退出前
+     *
+     * @param timeoutMillis 最多等待的时间
+     * @return 是否在时间内全部写出
+     */
+    public static boolean flush(long timeoutMillis) {
+        return printer.flush(timeoutMillis);
+    }
+
+    /**
+     * 安装崩溃处理：未捕获的异常先输出到日志，并在timeoutMillis内把还没有写出的日志写入文件，
+     * 之后再交给原来的UncaughtExceptionHandler
+     */
+    public static void installCrashHandler(long timeoutMillis) {
+        LogCrashHandler.install(printer, timeoutMillis);
+    }
+
     /**
      * General log function that accepts all configurations as parameter
      */
@@ -0,0 +1,62 @@
+package com.nx.logger;
+
+import com.nx.logger.printer.PrinterInterface;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按名字保存所有 {@link NamedLogger}，名字以'.'分隔组成层级，例如 "net.http" 的上级是 "net"，"net" 的上级是根（""）。
+ * <p>
+ * 每个NamedLogger缓存自己的有效级别，{@link LogConfig} 或某个NamedLogger的级别、adapter变化时统一失效，
+ * 下次打印时重新计算。只有 {@link #invalidate()} 对外可见，供其他包中更换LogConfig的printer调用。
+ */
+public final class LoggerRegistry {
+
+    static final String ROOT_NAME = "";
+
+    private static final Map<String, NamedLogger> LOGGERS = new ConcurrentHashMap<>();
+    //计算有效级别和使缓存失效互斥，保证失效之后不会再写入按旧配置计算的结果
+    static final Object LOCK = new Object();
+
+    private LoggerRegistry() {
+        //no instance
+    }
+
+    static NamedLogger get(PrinterInterface printer, String name) {
+        if (name == null) {
+            name = ROOT_NAME;
+        }
+        NamedLogger logger = LOGGERS.get(name);
+        if (logger != null) {
+            return logger;
+        }
+        synchronized (LOCK) {
+            logger = LOGGERS.get(name);
+            if (logger == null) {
+                NamedLogger parent = null;
+                if (!name.isEmpty()) {
+                    int dot = name.lastIndexOf('.');
+                    parent = get(printer, dot < 0 ? ROOT_NAME : name.substring(0, dot));
+                }
+                logger = new NamedLogger(printer, name, parent);
+                LOGGERS.put(name, logger);
+            }
+            return logger;
+        }
+    }
+
+    /**
+     * 级别或adapter配置变化、或者printer换成另一个LogConfig时调用，所有NamedLogger在下次打印时重新计算有效级别
+     */
+    public static void invalidate() {
+        if (LOGGERS.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            for (NamedLogger logger : LOGGERS.values()) {
+                logger.invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nx.logger;
+
+import com.nx.logger.androidBase.LogAdapterInterface;
+import com.nx.logger.printer.LogBuilder;
+import com.nx.logger.printer.NoopLogBuilder;
+import com.nx.logger.printer.PrinterInterface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按模块区分的日志，通过 {@link Logger#get(String)} 获取，例如：
+ * <pre>
+ * private static final NamedLogger LOG = Logger.get("net.http");
+ * LOG.d("request %s", url);
+ * Logger.get("net").setLevel(Logger.WARN);   //net及其下级（net.http等）只输出WARN以上
+ * </pre>
+ * 名字以'.'分隔组成层级，没有单独设置级别或adapter的logger使用上级的设置，一直到根（""），
+ * 根默认使用 {@link LogConfig} 中的级别（包括按tag的级别）和adapter。日志的tag为logger的名字。
+ * <p>
+ * 有效级别只计算一次并缓存，配置变化时失效。级别被关闭时的判断只读取一个字段，不查找任何表。
+ */
+public final class NamedLogger {
+
+    /**
+     * 使用上级的级别
+     */
+    public static final int INHERIT = -1;
+
+    //缓存失效时的阈值，任何级别都会进入慢路径重新计算
+    private static final int STALE = Integer.MIN_VALUE;
+
+    private final PrinterInterface printer;
+    private final String name;
+    private final NamedLogger parent;
+
+    private volatile int level = INHERIT;
+    //为null时使用上级的adapter
+    private volatile List<LogAdapterInterface> adapters;
+
+    //有效级别和adapter最低级别中较高的一个，低于它的日志不会输出
+    private volatile int threshold = STALE;
+    //在threshold之前写入，读到有效的threshold之后读取
+    private volatile int effectiveLevel;
+    private volatile List<LogAdapterInterface> effectiveAdapters;
+
+    NamedLogger(PrinterInterface printer, String name, NamedLogger parent) {
+        this.printer = printer;
+        this.name = name;
+        this.parent = parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 上级logger，根logger返回null
+     */
+    public NamedLogger getParent() {
+        return parent;
+    }
+
+    /**
+     * 设置该logger及其没有单独设置级别的下级的级别
+     *
+     * @param level {@link #INHERIT} 表示使用上级的级别
+     */
+    public NamedLogger setLevel(int level) {
+        this.level = level;
+        LoggerRegistry.invalidate();
+        return this;
+    }
+
+    /**
+     * @return 单独设置的级别，没有设置时返回 {@link #INHERIT}
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 设置该logger及其没有单独设置adapter的下级输出到的adapter，
+     * adapter的级别仍使用 {@link LogConfig#adapterLevel} 的配置
+     *
+     * @param adapters 为null时使用上级的adapter
+     */
+    public NamedLogger setAdapters(List<LogAdapterInterface> adapters) {
+        this.adapters = adapters == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(adapters));
+        LoggerRegistry.invalidate();
+        return this;
+    }
+
+    /**
+     * @return 单独设置的adapter，没有设置时返回null
+     */
+    public List<LogAdapterInterface> getAdapters() {
+        return adapters;
+    }
+
+    /**
+     * @return 考虑上级和 {@link LogConfig} 后的级别
+     */
+    public int getEffectiveLevel() {
+        synchronized (LoggerRegistry.LOCK) {
+            resolve();
+            return effectiveLevel;
+        }
+    }
+
+    public boolean isEnabled(int priority) {
+        int t = threshold;
+        if (priority < t) {
+            return false;
+        }
+        return t != STALE || priority >= resolve();
+    }
+
+    /**
+     * 开始一条日志的链式构造，级别被关闭时返回的对象忽略所有调用
+     */
+    public LogBuilder at(int priority) {
+        if (!isEnabled(priority)) {
+            return NoopLogBuilder.of(priority);
+        }
+        return printer.at(priority, getTag(), effectiveAdapters);
+    }
+
+    public void v(String message, Object... args) {
+        at(Logger.VERBOSE).log(message, args);
+    }
+
+    public void d(String message, Object... args) {
+        at(Logger.DEBUG).log(message, args);
+    }
+
+    public void i(String message, Object... args) {
+        at(Logger.INFO).log(message, args);
+    }
+
+    public void w(String message, Object... args) {
+        at(Logger.WARN).log(message, args);
+    }
+
+    public void e(String message, Object... args) {
+        at(Logger.ERROR).log(message, args);
+    }
+
+    public void e(Throwable throwable, String message, Object... args) {
+        at(Logger.ERROR).throwable(throwable).log(message, args);
+    }
+
+    void invalidate() {
+        threshold = STALE;
+    }
+
+    /**
+     * 根logger没有tag，使用全局tag
+     */
+    private String getTag() {
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * @return 重新计算后的阈值
+     */
+    private int resolve() {
+        synchronized (LoggerRegistry.LOCK) {
+            if (threshold != STALE) {
+                return threshold;
+            }
+            LogLevelFilter filter = printer.getLogConfig().getLevelFilter();
+            int resolvedLevel = INHERIT;
+            List<LogAdapterInterface> resolvedAdapters = null;
+            for (NamedLogger logger = this; logger != null; logger = logger.parent) {
+                if (resolvedLevel == INHERIT) {
+                    resolvedLevel = logger.level;
+                }
+                if (resolvedAdapters == null) {
+                    resolvedAdapters = logger.adapters;
+                }
+            }
+            if (resolvedLevel == INHERIT) {
+                resolvedLevel = filter.getLevel(getTag());
+            }
+
+            int adapterLevel;
+            if (resolvedAdapters == null) {
+                adapterLevel = filter.getMinAdapterLevel();
+            } else {
+                adapterLevel = Logger.NONE;
+                for (int i = 0, size = resolvedAdapters.size(); i < size; i++) {
+                    adapterLevel = Math.min(adapterLevel, filter.getAdapterLevel(resolvedAdapters.get(i), -1));
+                }
+            }
+            effectiveLevel = resolvedLevel;
+            effectiveAdapters = resolvedAdapters;
+            threshold = Math.max(resolvedLevel, adapterLevel);
+            return threshold;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NamedLogger{" + (name.isEmpty() ? "<root>" : name) + "}";
+    }
+}
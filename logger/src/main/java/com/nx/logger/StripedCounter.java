@@ -0,0 +1,48 @@
+package com.nx.logger;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器（Android上没有LongAdder）。每个线程按线程id落到不同的槽位，槽位之间相隔一个缓存行，
+ * 多个线程同时累加时不会争用同一个缓存行；读取时把所有槽位相加。
+ */
+public final class StripedCounter {
+
+    //每个槽位占8个long，即64字节，一个缓存行
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long value) {
+        int index = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+        cells.addAndGet(index, value);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    private static int stripeCount() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = Integer.highestOneBit(Math.max(cpus, 1));
+        if (stripes < cpus) {
+            stripes <<= 1;
+        }
+        return Math.min(Math.max(stripes, 2), 64);
+    }
+}
@@ -2,28 +2,14 @@ package com.nx.logger;
 
 import android.text.TextUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.nx.logger.format.JsonIndenter;
+import com.nx.logger.format.ObjectRenderers;
+import com.nx.logger.format.XmlIndenter;
 
 import java.io.PrintWriter;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.UnknownHostException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import static com.nx.logger.Logger.ASSERT;
 import static com.nx.logger.Logger.DEBUG;
@@ -42,6 +28,11 @@ public final class Utils {
    */
   public static final int JSON_INDENT = 4;
 
+  /**
+   * It is used for xml pretty print
+   */
+  public static final int XML_INDENT = 2;
+
   private Utils() {
     // Hidden constructor.
   }
@@ -114,6 +105,27 @@ public final class Utils {
     return sw.toString();
   }
 
+  /**
+   * 不分配内存计算字符串UTF-8编码后的字节数
+   */
+  public static int utf8Length(CharSequence value) {
+    int length = 0;
+    for (int i = 0, count = value.length(); i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
   public static String logLevel(int value) {
     switch (value) {
       case VERBOSE:
@@ -177,81 +189,51 @@ public final class Utils {
    * @return
    */
   public static String parseObjectMessage(Object obj) {
+    return parseObjectMessage(obj, 0, 0);
+  }
+
+  /**
+   * 格式化对象，对象直接以缩进格式输出，只遍历一次
+   *
+   * @param obj
+   * @param maxDepth          最大嵌套层数，0表示不限制
+   * @param maxCollectionSize 每个对象或集合最多输出的元素数量，0表示不限制
+   * @return
+   */
+  public static String parseObjectMessage(Object obj, int maxDepth, int maxCollectionSize) {
     if (obj != null) {
-      try {
-        if (obj instanceof List) {
-          JSONArray jsonArray = new JSONArray();
-          for (Object o : (List) obj) {
-            JSONObject jo = new JSONObject(new Gson().toJson(o));
-            jsonArray.put(jo);
-          }
-          String message = jsonArray.toString(JSON_INDENT);
-          return message;
-        } else if (obj instanceof Map) {
-          Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
-          JSONObject jsonObject = new JSONObject(gson.toJson(obj));
-          String message = jsonObject.toString(JSON_INDENT);
-          return message;
-        } else {
-          JSONObject jsonObject = new JSONObject(new Gson().toJson(obj));
-          String message = jsonObject.toString(JSON_INDENT);
-          return message;
-        }
-      } catch (JSONException e) {
-        return "Invalid object content";
-      }
+      String message = ObjectRenderers.render(obj, JSON_INDENT, maxDepth, maxCollectionSize);
+      return message != null ? message : "Invalid object content";
     } else {
       return "Null object content";
     }
   }
+
   /**
-   * 格式化xml字符串
+   * 格式化xml字符串，流式解析并直接写入结果，不建立DOM
    *
    * @param xml
    * @return
    */
   public static String parseXmlMessage(String xml) {
     if (!TextUtils.isEmpty(xml)) {
-      try {
-        Source xmlInput = new StreamSource(new StringReader(xml));
-        StreamResult xmlOutput = new StreamResult(new StringWriter());
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        transformer.transform(xmlInput, xmlOutput);
-        return xmlOutput.getWriter().toString().replaceFirst(">", ">\n");
-      } catch (TransformerException e) {
-        return "Invalid xml content";
-      }
+      String message = XmlIndenter.indent(xml, XML_INDENT);
+      return message != null ? message : "Invalid xml content";
     } else {
       return "Empty/Null xml content";
     }
   }
 
   /**
-   * 格式化json字符串
+   * 格式化json字符串，单遍扫描直接写入结果，不解析成JSONObject/JSONArray
    *
    * @param json
    * @return
    */
   public static String parseJsonMessage(String json) {
     if (!TextUtils.isEmpty(json)) {
-      try {
-        json = json.trim();
-        if (json.startsWith("{")) {
-          JSONObject jsonObject = new JSONObject(json);
-          String message = jsonObject.toString(JSON_INDENT);
-          return message;
-        } else if (json.startsWith("[")) {
-          JSONArray jsonArray = new JSONArray(json);
-          String message = jsonArray.toString(JSON_INDENT);
-          return message;
-        } else {
-          return "Invalid json content";
-        }
-      } catch (JSONException e) {
-        return "Invalid json content";
-      }
+      String message = JsonIndenter.indent(json, JSON_INDENT);
+      return message != null ? message : "Invalid json content";
     } else {
       return "Empty/Null json content";
     }
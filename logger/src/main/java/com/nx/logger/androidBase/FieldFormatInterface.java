@@ -0,0 +1,19 @@
+package com.nx.logger.androidBase;
+
+import com.nx.logger.LogFields;
+
+import java.util.List;
+
+/**
+ * 可以直接输出结构化字段的formatter
+ */
+public interface FieldFormatInterface extends RecordFormatInterface {
+
+    boolean isFieldsSupported();
+
+    /**
+     * @param lines  一条日志按顺序渲染出的所有行，不包含字段，调用返回后不能再持有
+     * @param fields 不为空的字段，调用返回后不能再持有
+     */
+    void logRecord(int priority, String tag, List<String> lines, LogFields fields);
+}
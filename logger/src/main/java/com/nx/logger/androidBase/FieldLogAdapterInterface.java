@@ -0,0 +1,23 @@
+package com.nx.logger.androidBase;
+
+import com.nx.logger.LogFields;
+
+import java.util.List;
+
+/**
+ * 可以直接输出结构化字段的adapter（例如二进制文件日志按类型写入字段），
+ * 其他adapter收到的是字段已经渲染为 k=v 文本的行。
+ */
+public interface FieldLogAdapterInterface extends RecordLogAdapterInterface {
+
+    /**
+     * @return 为false时仍按 {@link #logRecord(int, String, List)} 输出渲染好的文本
+     */
+    boolean isFieldsSupported();
+
+    /**
+     * @param lines  一条日志按顺序渲染出的所有行，不包含字段，调用返回后不能再持有
+     * @param fields 不为空的字段，调用返回后不能再持有
+     */
+    void logRecord(int priority, String tag, List<String> lines, LogFields fields);
+}
@@ -0,0 +1,14 @@
+package com.nx.logger.androidBase;
+
+/**
+ * 可以同步写出缓存中日志的adapter、formatter或写入实现，用于进程崩溃或退出之前
+ */
+public interface FlushInterface {
+
+    /**
+     * 把还没有写入的日志同步写入文件并落盘，最多等待timeoutMillis
+     *
+     * @return 是否在时间内全部写出
+     */
+    boolean flush(long timeoutMillis);
+}
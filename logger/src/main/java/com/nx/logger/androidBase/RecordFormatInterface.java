@@ -0,0 +1,14 @@
+package com.nx.logger.androidBase;
+
+import java.util.List;
+
+/**
+ * 支持整条日志一次格式化输出的formatter，例如文件日志把所有行合并为一次写入
+ */
+public interface RecordFormatInterface extends FormatInterface {
+
+    /**
+     * @param lines 一条日志按顺序渲染出的所有行，调用返回后不能再持有
+     */
+    void logRecord(int priority, String tag, List<String> lines);
+}
@@ -0,0 +1,15 @@
+package com.nx.logger.androidBase;
+
+import java.util.List;
+
+/**
+ * 按整条日志输出的adapter，一条日志渲染出的所有行（边框、调用栈、内容）在一次调用中交给adapter，
+ * 而不是每行调用一次 {@link #log(int, String, String)}。
+ */
+public interface RecordLogAdapterInterface extends LogAdapterInterface {
+
+    /**
+     * @param lines 一条日志按顺序渲染出的所有行，调用返回后不能再持有
+     */
+    void logRecord(int priority, String tag, List<String> lines);
+}
@@ -1,9 +1,17 @@
 package com.nx.logger.androidLog;
 
+import com.nx.logger.Utils;
 import com.nx.logger.androidBase.FormatInterface;
-import com.nx.logger.androidBase.LogAdapterInterface;
+import com.nx.logger.androidBase.RecordLogAdapterInterface;
 
-public class AndroidLogAdapter implements LogAdapterInterface {
+import java.util.List;
+
+public class AndroidLogAdapter implements RecordLogAdapterInterface {
+
+    /**
+     * logcat单条日志的上限约为4076字节，多行合并时不超过该长度
+     */
+    private static final int MAX_RECORD_BYTES = 4000;
 
     private final FormatInterface formatInterface;
 
@@ -25,4 +33,35 @@ public class AndroidLogAdapter implements LogAdapterInterface {
         formatInterface.log(priority, tag, message);
     }
 
-}
\ No newline at end of file
+    /**
+     * 把多行合并成尽量少的logcat调用，每次不超过 {@link #MAX_RECORD_BYTES} 字节
+     */
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines) {
+        if (lines.size() == 1) {
+            formatInterface.log(priority, tag, lines.get(0));
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        int bytes = 0;
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            String line = lines.get(i);
+            int lineBytes = Utils.utf8Length(line);
+            if (builder.length() > 0 && bytes + 1 + lineBytes > MAX_RECORD_BYTES) {
+                formatInterface.log(priority, tag, builder.toString());
+                builder.setLength(0);
+                bytes = 0;
+            }
+            if (builder.length() > 0) {
+                builder.append('\n');
+                bytes++;
+            }
+            builder.append(line);
+            bytes += lineBytes;
+        }
+        if (builder.length() > 0) {
+            formatInterface.log(priority, tag, builder.toString());
+        }
+    }
+
+}
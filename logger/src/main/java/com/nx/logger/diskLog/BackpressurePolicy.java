@@ -0,0 +1,24 @@
+package com.nx.logger.diskLog;
+
+/**
+ * 文件写入队列满（超过待写入条数或字节数上限）时的处理方式
+ */
+public enum BackpressurePolicy {
+    /**
+     * 阻塞调用线程直到写入线程腾出空间。写入线程自己打日志时按DROP_NEWEST处理，避免死锁
+     */
+    BLOCK,
+    /**
+     * 丢弃新来的日志
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃队列中最旧的日志，为新日志腾出空间
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃低于指定级别的新日志。达到该级别的日志（ERROR和ASSERT总是如此）先挤掉队列中低于该级别的日志，
+     * 仍然放不下时允许超出上限，超出两倍上限后按DROP_OLDEST丢弃最旧的日志
+     */
+    DROP_BELOW_LEVEL
+}
@@ -0,0 +1,207 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.LogFields;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static com.nx.logger.diskLog.BinaryLogImplement.FILE_MAGIC;
+import static com.nx.logger.diskLog.BinaryLogImplement.OP_DEFINE;
+import static com.nx.logger.diskLog.BinaryLogImplement.OP_FIELDS;
+
+/**
+ * 把 {@link BinaryLogImplement} 写入的二进制分段还原为 {@link DiskLogFormatter} 的文本格式：
+ * yyyy.MM.dd HH:mm:ss.SSS,LEVEL,tag:message
+ * <p>
+ * 不依赖Android，可以在PC上直接运行：java com.nx.logger.diskLog.BinaryLogDecoder logs_0.blog ...
+ * 时间按运行解码程序的机器所在时区显示。文件末尾不完整的记录（进程被杀死时）会被忽略。
+ * 也可以直接解码 {@link LogCompressor} 压缩后的 .blog.gz 文件。
+ * 结构化字段还原为 k=v：带边框的日志在底边之前单独一行，否则追加在消息之后。
+ */
+public final class BinaryLogDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String NEW_LINE = "\n";
+    private static final String NEW_LINE_REPLACEMENT = " <br> ";
+    //与 PrinterLogFormatter 的边框相同
+    private static final char BOTTOM_LEFT_CORNER = '╚';
+    private static final String CONTENT_PREFIX = "║ ";
+
+    private BinaryLogDecoder() {
+        //no instance
+    }
+
+    /**
+     * @return 解码出的日志条数
+     */
+    public static int decode(File segment, Writer out) throws IOException {
+        InputStream in = LogFileReader.open(segment);
+        try {
+            return decode(in, out);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static int decode(InputStream stream, Writer out) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != FILE_MAGIC) {
+            throw new IOException("Not a binary log segment");
+        }
+        in.readByte(); // version
+        long time = in.readLong();
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+        Date date = new Date();
+        List<String> strings = new ArrayList<>();
+        //属于下一条记录的字段
+        LogFields fields = new LogFields();
+        StringBuilder builder = new StringBuilder();
+        int count = 0;
+        try {
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    break;
+                }
+                if (op == OP_DEFINE) {
+                    strings.add(readString(in));
+                    continue;
+                }
+                if (op == OP_FIELDS) {
+                    readFields(in, strings, fields);
+                    continue;
+                }
+                long zigzag = readVarLong(in);
+                time += (zigzag >>> 1) ^ -(zigzag & 1);
+                String tag = readRef(in, strings);
+                String message = readRef(in, strings);
+
+                date.setTime(time);
+                String prefix = dateFormat.format(date) + ',' + levelName(op) + ',' + tag + ':';
+                builder.setLength(0);
+                if (!fields.isEmpty() && !message.isEmpty() && message.charAt(0) == BOTTOM_LEFT_CORNER) {
+                    fields.appendTo(builder.append(prefix).append(CONTENT_PREFIX)).append(NEW_LINE);
+                    fields.clear();
+                    count++;
+                }
+                builder.append(prefix).append(message.replace(NEW_LINE, NEW_LINE_REPLACEMENT));
+                if (!fields.isEmpty()) {
+                    fields.appendTo(builder.append(' '));
+                    fields.clear();
+                }
+                builder.append(NEW_LINE);
+                out.write(builder.toString());
+                count++;
+            }
+        } catch (EOFException e) {
+            //最后一条记录没有写完整
+        }
+        out.flush();
+        return count;
+    }
+
+    private static void readFields(DataInputStream in, List<String> strings, LogFields fields)
+            throws IOException {
+        fields.clear();
+        for (int i = 0, count = readVarInt(in); i < count; i++) {
+            String key = readRef(in, strings);
+            int type = in.readUnsignedByte();
+            switch (type) {
+                case LogFields.TYPE_LONG:
+                    long zigzag = readVarLong(in);
+                    fields.add(key, (zigzag >>> 1) ^ -(zigzag & 1));
+                    break;
+                case LogFields.TYPE_DOUBLE:
+                    fields.add(key, Double.longBitsToDouble(in.readLong()));
+                    break;
+                case LogFields.TYPE_BOOLEAN:
+                    fields.add(key, in.readUnsignedByte() != 0);
+                    break;
+                case LogFields.TYPE_STRING:
+                    fields.add(key, readRef(in, strings));
+                    break;
+                default:
+                    throw new IOException("Unknown field type " + type);
+            }
+        }
+    }
+
+    private static String readRef(DataInputStream in, List<String> strings) throws IOException {
+        int ref = readVarInt(in);
+        if (ref == 0) {
+            return readString(in);
+        }
+        if (ref > strings.size()) {
+            throw new IOException("Unknown string reference " + ref);
+        }
+        return strings.get(ref - 1);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * 与 Utils.logLevel 相同，这里单独实现以免在PC上加载Android相关的类
+     */
+    private static String levelName(int level) {
+        switch (level) {
+            case 2:
+                return "VERBOSE";
+            case 3:
+                return "DEBUG";
+            case 4:
+                return "INFO";
+            case 5:
+                return "WARN";
+            case 6:
+                return "ERROR";
+            case 7:
+                return "ASSERT";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: BinaryLogDecoder <segment>...");
+            System.exit(1);
+        }
+        Writer out = new OutputStreamWriter(System.out, UTF_8);
+        for (String path : args) {
+            decode(new File(path), out);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,161 @@
+package com.nx.logger.diskLog;
+
+import android.os.Environment;
+import android.os.HandlerThread;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.FieldFormatInterface;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.LogInterface;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * 二进制格式的文件日志，不在设备上拼接时间、级别和tag文本，而是交给 {@link BinaryLogImplement} 紧凑编码。
+ * 与 {@link DiskLogFormatter} 相比写入的字节数少得多，用 {@link BinaryLogDecoder} 还原为文本。
+ * <p>
+ * 使用方式：new DiskLogAdapter(BinaryLogFormatter.newBuilder().build())
+ */
+public class BinaryLogFormatter implements FieldFormatInterface, FlushInterface {
+
+    private final LogInterface logInterface;
+
+    private BinaryLogFormatter(Builder builder) {
+        logInterface = builder.logInterface;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public void log(int priority, String tag, String message) {
+        logInterface.log(priority, tag, message);
+    }
+
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines) {
+        if (logInterface instanceof BinaryLogImplement) {
+            ((BinaryLogImplement) logInterface).logRecord(priority, tag, lines);
+            return;
+        }
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            logInterface.log(priority, tag, lines.get(i));
+        }
+    }
+
+    /**
+     * 只有写入 {@link BinaryLogImplement} 时才按类型保存字段
+     */
+    @Override
+    public boolean isFieldsSupported() {
+        return logInterface instanceof BinaryLogImplement;
+    }
+
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines, LogFields fields) {
+        ((BinaryLogImplement) logInterface).logRecord(priority, tag, lines, fields);
+    }
+
+    @Override
+    public boolean flush(long timeoutMillis) {
+        return !(logInterface instanceof FlushInterface) || ((FlushInterface) logInterface).flush(timeoutMillis);
+    }
+
+    public static final class Builder {
+        private static final int MAX_BYTES = 500 * 1024;
+        private static final int FLUSH_BUFFER_SIZE = 32 * 1024;
+        private static final long FLUSH_INTERVAL = 1000;
+
+        LogInterface logInterface;
+        String folder;
+        int maxFileSize = MAX_BYTES;
+        LogRotationListener rotationListener;
+        int maxPendingRecords = DiskLogImplement.DEFAULT_MAX_PENDING_RECORDS;
+        long maxPendingBytes = DiskLogImplement.DEFAULT_MAX_PENDING_BYTES;
+        BackpressurePolicy backpressurePolicy = BackpressurePolicy.DROP_BELOW_LEVEL;
+        int keepLevel = Logger.ERROR;
+
+        private Builder() {
+        }
+
+        public Builder logStrategy(LogInterface val) {
+            logInterface = val;
+            return this;
+        }
+
+        /**
+         * 日志文件所在目录，默认为外部存储根目录下的nxlogger
+         */
+        public Builder folder(String val) {
+            folder = val;
+            return this;
+        }
+
+        public Builder maxFileSize(int val) {
+            maxFileSize = val;
+            return this;
+        }
+
+        /**
+         * 分段文件写满滚动时的回调，例如 new LogCompressor() 在后台压缩旧分段
+         */
+        public Builder rotationListener(LogRotationListener val) {
+            rotationListener = val;
+            return this;
+        }
+
+        /**
+         * 最多等待写入的日志条数，默认8192
+         */
+        public Builder maxPendingRecords(int val) {
+            maxPendingRecords = val;
+            return this;
+        }
+
+        /**
+         * 等待写入的日志最多占用的内存字节数，默认4M
+         */
+        public Builder maxPendingBytes(long val) {
+            maxPendingBytes = val;
+            return this;
+        }
+
+        /**
+         * 等待写入的日志超过上限时的处理方式，默认为 {@link BackpressurePolicy#DROP_BELOW_LEVEL}
+         */
+        public Builder backpressurePolicy(BackpressurePolicy val) {
+            backpressurePolicy = val;
+            return this;
+        }
+
+        /**
+         * {@link BackpressurePolicy#DROP_BELOW_LEVEL} 策略下总是保留的最低级别，默认ERROR
+         */
+        public Builder keepLevel(int val) {
+            keepLevel = val;
+            return this;
+        }
+
+        public BinaryLogFormatter build() {
+            if (logInterface == null) {
+                if (folder == null) {
+                    String diskPath = Environment.getExternalStorageDirectory().getPath();
+                    folder = diskPath + File.separatorChar + "nxlogger";
+                }
+                HandlerThread ht = new HandlerThread("AndroidBinaryLogger." + folder);
+                ht.start();
+                logInterface = new BinaryLogImplement(new BinaryLogImplement.WriteHandler(ht.getLooper(), folder,
+                        maxFileSize, FLUSH_BUFFER_SIZE, FLUSH_INTERVAL, rotationListener), maxPendingRecords,
+                        maxPendingBytes, backpressurePolicy, keepLevel);
+            }
+            BinaryLogFormatter formatter = new BinaryLogFormatter(this);
+            if (logInterface instanceof BinaryLogImplement) {
+                ((BinaryLogImplement) logInterface).setDropReporter(formatter);
+            }
+            return formatter;
+        }
+    }
+}
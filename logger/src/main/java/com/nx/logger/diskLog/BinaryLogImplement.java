@@ -0,0 +1,464 @@
+package com.nx.logger.diskLog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.LogStats;
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.FormatInterface;
+import com.nx.logger.androidBase.LogInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制日志写入。调用线程只记录时间戳并把日志交给后台线程，编码和写文件都在后台线程完成。
+ * 与 {@link DiskLogImplement} 一样经过有界的 {@link DiskLogQueue}，等待写入的日志超过上限时按 {@link BackpressurePolicy} 处理。
+ * <p>
+ * 分段文件格式：文件头 [FILE_MAGIC(4) VERSION(1) baseTime(8)]，之后是连续的操作：
+ * <ul>
+ * <li>OP_DEFINE(1) length(varint) utf8：向本分段的字符串表追加一个字符串，编号从0递增</li>
+ * <li>level(1) deltaTime(zigzag varint) tagRef messageRef：一条日志，时间为相对上一条日志的毫秒差；
+ * ref为varint，0表示后面紧跟 length(varint) utf8，否则引用字符串表中的第ref-1项</li>
+ * <li>OP_FIELDS(1) count(varint) 之后是count个 keyRef type(1) value：紧跟其后的一条日志的结构化字段，
+ * value按 {@link LogFields} 的类型分别为 zigzag varint、8字节double、1字节boolean或字符串ref</li>
+ * </ul>
+ * tag和重复出现的短消息（边框、调用位置、常量日志）会被放进字符串表，之后只写编号。
+ * 使用 {@link BinaryLogDecoder} 把分段文件还原为与 {@link DiskLogFormatter} 相同的文本格式。
+ */
+public class BinaryLogImplement implements LogInterface, FlushInterface {
+
+    static final int FILE_MAGIC = 0x4E584C42; // "NXLB"
+    //版本2增加了OP_FIELDS
+    static final byte VERSION = 2;
+    static final byte OP_DEFINE = 0x10;
+    static final byte OP_FIELDS = 0x11;
+    static final String FILE_PREFIX = "logs_";
+    static final String FILE_SUFFIX = ".blog";
+
+    private final DiskLogQueue queue;
+
+    /**
+     * 使用默认的上限，超过上限时优先丢弃低于ERROR的日志
+     */
+    public BinaryLogImplement(Handler handler) {
+        this(handler, DiskLogImplement.DEFAULT_MAX_PENDING_RECORDS, DiskLogImplement.DEFAULT_MAX_PENDING_BYTES,
+                BackpressurePolicy.DROP_BELOW_LEVEL, Logger.ERROR);
+    }
+
+    /**
+     * @param maxPendingRecords 最多等待写入的日志条数
+     * @param maxPendingBytes   等待写入的日志最多占用的内存字节数
+     * @param policy            超过上限时的处理方式
+     * @param keepLevel         DROP_BELOW_LEVEL策略下总是保留的最低级别
+     */
+    public BinaryLogImplement(Handler handler, int maxPendingRecords, long maxPendingBytes, BackpressurePolicy policy,
+                              int keepLevel) {
+        this.queue = new DiskLogQueue(handler, maxPendingRecords, maxPendingBytes, policy, keepLevel);
+    }
+
+    @Override
+    public void log(int level, String tag, String message) {
+        offer(level, new Entry(System.currentTimeMillis(), tag, message, null, null));
+    }
+
+    /**
+     * 一条日志的所有行作为一个消息交给后台线程，依次写成时间相同的多条记录
+     */
+    public void logRecord(int level, String tag, List<String> lines) {
+        offer(level, new Entry(System.currentTimeMillis(), tag, null, lines.toArray(new String[lines.size()]), null));
+    }
+
+    /**
+     * 字段按类型写在最后一行之前，解码时还原为与文本日志相同的 k=v
+     */
+    public void logRecord(int level, String tag, List<String> lines, LogFields fields) {
+        offer(level, new Entry(System.currentTimeMillis(), tag, null, lines.toArray(new String[lines.size()]),
+                fields.copy()));
+    }
+
+    /**
+     * 在写入线程中把队列中的日志全部写入文件并落盘，调用线程最多等待timeoutMillis
+     *
+     * @return 超时或写入线程已经退出时返回false
+     */
+    @Override
+    public boolean flush(long timeoutMillis) {
+        return queue.flush(timeoutMillis);
+    }
+
+    void setDropReporter(FormatInterface dropReporter) {
+        queue.setDropReporter(dropReporter);
+    }
+
+    private void offer(int level, Entry entry) {
+        queue.offer(level, entry, entry.size());
+    }
+
+    private static final class Entry {
+        //每个结构化字段占用的内存字节数的估计值
+        private static final int FIELD_SIZE = 32;
+
+        final long time;
+        final String tag;
+        final String message;
+        final String[] lines;
+        final LogFields fields;
+
+        Entry(long time, String tag, String message, String[] lines, LogFields fields) {
+            this.time = time;
+            this.tag = tag;
+            this.message = message;
+            this.lines = lines;
+            this.fields = fields;
+        }
+
+        /**
+         * @return 占用的内存字节数，String在内存中每个字符占两个字节
+         */
+        int size() {
+            int chars = length(tag) + length(message);
+            if (lines != null) {
+                for (String line : lines) {
+                    chars += length(line);
+                }
+            }
+            return chars * 2 + (fields != null ? fields.size() * FIELD_SIZE : 0);
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+
+    static class WriteHandler extends Handler implements DiskLogQueue.Syncable {
+
+        private static final int MSG_FLUSH = -1;
+        //字符串表的上限，避免大量不重复的日志占用内存
+        private static final int MAX_STRINGS = 1024;
+        //只有不超过该长度的消息才会放进字符串表
+        private static final int MAX_INTERNED_LENGTH = 128;
+
+        private final String folder;
+        private final int maxFileSize;
+        private final int flushBufferSize;
+        private final long flushInterval;
+
+        private final ByteBuffer buffer;
+        private ByteBuffer scratch = ByteBuffer.allocate(1024);
+        private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private final LogRotationListener rotationListener;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        //写字段时每个key和字符串值在字符串表中的编号
+        private int[] fieldIds = new int[16];
+        private FileChannel channel;
+        private File channelFile;
+        private int fileIndex = -1;
+        private long fileSize;
+        private long lastTime;
+        private boolean flushScheduled = false;
+
+        WriteHandler(Looper looper, String folder, int maxFileSize, int flushBufferSize, long flushInterval,
+                     LogRotationListener rotationListener) {
+            super(looper);
+            this.rotationListener = rotationListener;
+            this.folder = folder;
+            this.maxFileSize = maxFileSize;
+            this.flushBufferSize = flushBufferSize;
+            this.flushInterval = flushInterval;
+            this.buffer = ByteBuffer.allocate(flushBufferSize);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.what == MSG_FLUSH) {
+                flush();
+                return;
+            }
+            Entry entry = (Entry) msg.obj;
+            try {
+                if (channel == null || fileSize + buffer.position() >= maxFileSize) {
+                    flush();
+                    openNextFile(entry.time);
+                }
+                if (entry.lines == null) {
+                    writeRecord(msg.what, entry.time, entry.tag, entry.message);
+                } else {
+                    for (int i = 0, last = entry.lines.length - 1; i <= last; i++) {
+                        if (i == last && entry.fields != null) {
+                            writeFields(entry.fields);
+                        }
+                        writeRecord(msg.what, entry.time, entry.tag, entry.lines[i]);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                LogStats.getInstance().onIoError(e);
+                closeChannel();
+                return;
+            }
+
+            if (buffer.position() >= flushBufferSize / 2) {
+                flush();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                sendEmptyMessageDelayed(MSG_FLUSH, flushInterval);
+            }
+        }
+
+        private void writeRecord(int level, long time, String tag, String message) {
+            tag = String.valueOf(tag);
+            message = String.valueOf(message);
+            //字符串定义必须在记录之前写出
+            int tagId = intern(tag);
+            int messageId = intern(message);
+
+            long delta = time - lastTime;
+            ensureCapacity(1 + 10);
+            buffer.put((byte) level);
+            writeVarLong(buffer, (delta << 1) ^ (delta >> 63));
+            writeRef(tag, tagId);
+            writeRef(message, messageId);
+            lastTime = time;
+        }
+
+        private void writeFields(LogFields fields) {
+            int count = fields.size();
+            if (fieldIds.length < count * 2) {
+                fieldIds = new int[count * 2];
+            }
+            //字符串定义必须在OP_FIELDS之前写出
+            for (int i = 0; i < count; i++) {
+                fieldIds[i * 2] = intern(fields.getKey(i));
+                if (fields.getType(i) == LogFields.TYPE_STRING) {
+                    fieldIds[i * 2 + 1] = intern(String.valueOf(fields.getString(i)));
+                }
+            }
+            ensureCapacity(1 + 5);
+            buffer.put(OP_FIELDS);
+            writeVarInt(buffer, count);
+            for (int i = 0; i < count; i++) {
+                writeRef(fields.getKey(i), fieldIds[i * 2]);
+                byte type = fields.getType(i);
+                ensureCapacity(1 + 10);
+                buffer.put(type);
+                switch (type) {
+                    case LogFields.TYPE_LONG:
+                        long value = fields.getLong(i);
+                        writeVarLong(buffer, (value << 1) ^ (value >> 63));
+                        break;
+                    case LogFields.TYPE_DOUBLE:
+                        buffer.putLong(Double.doubleToRawLongBits(fields.getDouble(i)));
+                        break;
+                    case LogFields.TYPE_BOOLEAN:
+                        buffer.put((byte) (fields.getBoolean(i) ? 1 : 0));
+                        break;
+                    default:
+                        writeRef(String.valueOf(fields.getString(i)), fieldIds[i * 2 + 1]);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * 写入字符串引用：编号+1，或者0加上字符串内容
+         */
+        private void writeRef(String value, int id) {
+            ensureCapacity(10);
+            if (id >= 0) {
+                writeVarInt(buffer, id + 1);
+                return;
+            }
+            int length = encode(value);
+            writeVarInt(buffer, 0);
+            writeVarInt(buffer, length);
+            putBytes(length);
+        }
+
+        /**
+         * @return 字符串在本分段字符串表中的编号，字符串过长或字符串表已满时返回-1
+         */
+        private int intern(String value) {
+            Integer id = strings.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (value.length() > MAX_INTERNED_LENGTH || strings.size() >= MAX_STRINGS) {
+                return -1;
+            }
+            int length = encode(value);
+            ensureCapacity(1 + 5);
+            buffer.put(OP_DEFINE);
+            writeVarInt(buffer, length);
+            putBytes(length);
+            id = strings.size();
+            strings.put(value, id);
+            return id;
+        }
+
+        private int encode(String value) {
+            CharBuffer in = CharBuffer.wrap(value);
+            scratch.clear();
+            encoder.reset();
+            while (encoder.encode(in, scratch, true).isOverflow()) {
+                ByteBuffer larger = ByteBuffer.allocate(scratch.capacity() * 2);
+                scratch.flip();
+                larger.put(scratch);
+                scratch = larger;
+            }
+            return scratch.position();
+        }
+
+        private void ensureCapacity(int size) {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        /**
+         * 把scratch中编码好的内容写入缓冲区，超长的内容分多次写出
+         */
+        private void putBytes(int length) {
+            byte[] bytes = scratch.array();
+            int offset = 0;
+            while (offset < length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(buffer.remaining(), length - offset);
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        @Override
+        public void sync() {
+            flush();
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    LogStats.getInstance().onIoError(e);
+                }
+            }
+        }
+
+        private void openNextFile(long baseTime) throws IOException {
+            boolean rotated = channel != null;
+            closeChannel();
+            if (rotated) {
+                LogStats.getInstance().onRotated();
+                if (rotationListener != null) {
+                    rotationListener.onRotated(channelFile);
+                }
+            }
+            File dir = new File(folder);
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            if (fileIndex < 0) {
+                fileIndex = lastFileIndex(dir);
+            }
+            fileIndex++;
+            channelFile = new File(dir, FILE_PREFIX + fileIndex + FILE_SUFFIX);
+            channel = new FileOutputStream(channelFile, true).getChannel();
+            fileSize = 0;
+            strings.clear();
+            lastTime = baseTime;
+            buffer.putInt(FILE_MAGIC);
+            buffer.put(VERSION);
+            buffer.putLong(baseTime);
+        }
+
+        private void flush() {
+            if (flushScheduled) {
+                flushScheduled = false;
+                removeMessages(MSG_FLUSH);
+            }
+            if (channel == null) {
+                buffer.clear();
+                return;
+            }
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    int written = channel.write(buffer);
+                    fileSize += written;
+                    LogStats.getInstance().onBytesWritten(written);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                LogStats.getInstance().onIoError(e);
+                closeChannel();
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                channel = null;
+            }
+        }
+
+        private static int lastFileIndex(File dir) {
+            int last = -1;
+            String[] names = dir.list();
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(LogCompressor.SUFFIX)) {
+                        name = name.substring(0, name.length() - LogCompressor.SUFFIX.length());
+                    }
+                    if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                        try {
+                            last = Math.max(last, Integer.parseInt(
+                                    name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            //not a binary segment
+                        }
+                    }
+                }
+            }
+            return last;
+        }
+
+        private static void writeVarInt(ByteBuffer out, int value) {
+            while ((value & ~0x7F) != 0) {
+                out.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.put((byte) value);
+        }
+
+        private static void writeVarLong(ByteBuffer out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.put((byte) value);
+        }
+    }
+}
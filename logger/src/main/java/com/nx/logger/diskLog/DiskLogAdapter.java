@@ -1,9 +1,15 @@
 package com.nx.logger.diskLog;
 
+import com.nx.logger.LogFields;
+import com.nx.logger.androidBase.FieldFormatInterface;
+import com.nx.logger.androidBase.FieldLogAdapterInterface;
+import com.nx.logger.androidBase.FlushInterface;
 import com.nx.logger.androidBase.FormatInterface;
-import com.nx.logger.androidBase.LogAdapterInterface;
+import com.nx.logger.androidBase.RecordFormatInterface;
 
-public class DiskLogAdapter implements LogAdapterInterface {
+import java.util.List;
+
+public class DiskLogAdapter implements FieldLogAdapterInterface, FlushInterface {
 
     private final FormatInterface formatInterface;
 
@@ -25,4 +31,31 @@ public class DiskLogAdapter implements LogAdapterInterface {
         formatInterface.log(priority, tag, message);
     }
 
-}
\ No newline at end of file
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines) {
+        if (formatInterface instanceof RecordFormatInterface) {
+            ((RecordFormatInterface) formatInterface).logRecord(priority, tag, lines);
+            return;
+        }
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            formatInterface.log(priority, tag, lines.get(i));
+        }
+    }
+
+    @Override
+    public boolean isFieldsSupported() {
+        return formatInterface instanceof FieldFormatInterface
+                && ((FieldFormatInterface) formatInterface).isFieldsSupported();
+    }
+
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines, LogFields fields) {
+        ((FieldFormatInterface) formatInterface).logRecord(priority, tag, lines, fields);
+    }
+
+    @Override
+    public boolean flush(long timeoutMillis) {
+        return !(formatInterface instanceof FlushInterface) || ((FlushInterface) formatInterface).flush(timeoutMillis);
+    }
+
+}
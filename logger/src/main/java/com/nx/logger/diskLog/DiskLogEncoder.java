@@ -0,0 +1,166 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.Utils;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把一条日志按 {@link DiskLogFormatter} 的CSV格式直接编码为UTF-8写入池化的 {@link LogBuffer}：
+ * yyyy.MM.dd HH:mm:ss.SSS,LEVEL,tag:message
+ * <p>
+ * 时间的"yyyy.MM.dd HH:mm:ss."部分每个线程按秒缓存，只补上毫秒；级别名预先编码；换行符在编码的同时替换，
+ * 不再使用正则和中间字符串。每个线程有自己的缓存，可以在多个线程中同时调用。
+ */
+final class DiskLogEncoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String NEW_LINE = System.getProperty("line.separator");
+    private static final byte[] NEW_LINE_BYTES = NEW_LINE.getBytes(UTF_8);
+    private static final byte[] NEW_LINE_REPLACEMENT = " <br> ".getBytes(UTF_8);
+    private static final byte[][] LEVELS = new byte[8][];
+
+    static {
+        for (int i = 0; i < LEVELS.length; i++) {
+            LEVELS[i] = Utils.logLevel(i).getBytes(UTF_8);
+        }
+    }
+
+    private final ThreadLocal<SecondPrefix> localPrefix = new ThreadLocal<SecondPrefix>() {
+        @Override
+        protected SecondPrefix initialValue() {
+            return new SecondPrefix();
+        }
+    };
+
+    LogBuffer encode(long time, int priority, String tag, String message) {
+        LogBuffer buffer = obtain(time, tag);
+        encodeLine(buffer, localPrefix.get().prefix(time), time, priority, tag, message);
+        return buffer;
+    }
+
+    /**
+     * 一条日志的所有行编码进同一个缓冲区，每行一条CSV记录，时间相同
+     */
+    LogBuffer encode(long time, int priority, String tag, List<String> lines) {
+        LogBuffer buffer = obtain(time, tag);
+        byte[] prefix = localPrefix.get().prefix(time);
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            encodeLine(buffer, prefix, time, priority, tag, lines.get(i));
+        }
+        return buffer;
+    }
+
+    private static LogBuffer obtain(long time, String tag) {
+        LogBuffer buffer = LogBuffer.obtain();
+        buffer.time = time;
+        buffer.tag = tag;
+        return buffer;
+    }
+
+    private static void encodeLine(LogBuffer buffer, byte[] prefix, long time, int priority, String tag,
+                                   String message) {
+        int millis = (int) (time % 1000);
+        if (millis < 0) {
+            millis += 1000;
+        }
+        buffer.ensureCapacity(prefix.length + 3 + 1);
+        byte[] data = buffer.data;
+        int pos = buffer.length;
+        System.arraycopy(prefix, 0, data, pos, prefix.length);
+        pos += prefix.length;
+        data[pos++] = (byte) ('0' + millis / 100);
+        data[pos++] = (byte) ('0' + millis / 10 % 10);
+        data[pos++] = (byte) ('0' + millis % 10);
+        data[pos++] = ',';
+        buffer.length = pos;
+
+        byte[] level = priority >= 0 && priority < LEVELS.length ? LEVELS[priority] : LEVELS[0];
+        append(buffer, level);
+        append(buffer, (byte) ',');
+        appendUtf8(buffer, String.valueOf(tag), false);
+        append(buffer, (byte) ':');
+        appendUtf8(buffer, String.valueOf(message), true);
+        append(buffer, NEW_LINE_BYTES);
+    }
+
+    private static void append(LogBuffer buffer, byte b) {
+        buffer.ensureCapacity(1);
+        buffer.data[buffer.length++] = b;
+    }
+
+    private static void append(LogBuffer buffer, byte[] bytes) {
+        buffer.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer.data, buffer.length, bytes.length);
+        buffer.length += bytes.length;
+    }
+
+    /**
+     * 手工编码UTF-8，escapeNewLine为true时把换行符替换为" <br> "，否则会破坏CSV格式
+     */
+    private static void appendUtf8(LogBuffer buffer, String value, boolean escapeNewLine) {
+        int length = value.length();
+        buffer.ensureCapacity(length);
+        byte[] data = buffer.data;
+        int pos = buffer.length;
+        char newLineStart = NEW_LINE.charAt(0);
+        for (int i = 0; i < length; i++) {
+            if (pos + NEW_LINE_REPLACEMENT.length > data.length) {
+                buffer.length = pos;
+                buffer.ensureCapacity(Math.max(NEW_LINE_REPLACEMENT.length, (length - i) * 3));
+                data = buffer.data;
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (escapeNewLine && c == newLineStart && value.startsWith(NEW_LINE, i)) {
+                    System.arraycopy(NEW_LINE_REPLACEMENT, 0, data, pos, NEW_LINE_REPLACEMENT.length);
+                    pos += NEW_LINE_REPLACEMENT.length;
+                    i += NEW_LINE.length() - 1;
+                } else {
+                    data[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                data[pos++] = (byte) (0xC0 | (c >> 6));
+                data[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                data[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                data[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                data[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                data[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                //孤立的代理字符，与CharsetEncoder的REPLACE行为一致（Character.isSurrogate需要API 19）
+                data[pos++] = '?';
+            } else {
+                data[pos++] = (byte) (0xE0 | (c >> 12));
+                data[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                data[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer.length = pos;
+    }
+
+    /**
+     * 每个线程缓存当前这一秒的 "yyyy.MM.dd HH:mm:ss." 前缀
+     */
+    private static final class SecondPrefix {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.", Locale.UK);
+        private final Date date = new Date();
+        private long second = Long.MIN_VALUE;
+        private byte[] prefix;
+
+        byte[] prefix(long time) {
+            long current = time >= 0 ? time / 1000 : (time - 999) / 1000;
+            if (current != second) {
+                date.setTime(time);
+                prefix = dateFormat.format(date).getBytes(UTF_8);
+                second = current;
+            }
+            return prefix;
+        }
+    }
+}
@@ -4,13 +4,16 @@ import android.os.Environment;
 import android.os.Handler;
 import android.os.HandlerThread;
 
+import com.nx.logger.Logger;
 import com.nx.logger.Utils;
-import com.nx.logger.androidBase.FormatInterface;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.RecordFormatInterface;
 import com.nx.logger.androidBase.LogInterface;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -18,7 +21,7 @@ import java.util.Locale;
  * Writes to CSV the following data:
  * epoch timestamp, ISO8601 timestamp (human-readable), log level, tag, log message.
  */
-public class DiskLogFormatter implements FormatInterface {
+public class DiskLogFormatter implements RecordFormatInterface, FlushInterface {
 
     private static final String NEW_LINE = System.getProperty("line.separator");
     private static final String NEW_LINE_REPLACEMENT = " <br> ";
@@ -29,12 +32,15 @@ public class DiskLogFormatter implements FormatInterface {
     private final SimpleDateFormat dateFormat;
     private final LogInterface logInterface;
     private final String tag;
+    //使用默认时间格式且输出支持字节写入时，用无分配的编码器代替下面的StringBuilder路径
+    private final DiskLogEncoder encoder;
 
     private DiskLogFormatter(Builder builder) {
         date = builder.date;
         dateFormat = builder.dateFormat;
         logInterface = builder.logInterface;
         tag = builder.tag;
+        encoder = builder.encoder;
     }
 
     public static Builder newBuilder() {
@@ -45,16 +51,52 @@ public class DiskLogFormatter implements FormatInterface {
     public void log(int priority, String tag, String message) {
         //String tag = formatTag(onceOnlyTag);
 
+        if (encoder != null) {
+            ((EncodedLogInterface) logInterface).log(priority,
+                    encoder.encode(System.currentTimeMillis(), priority, tag, message));
+            return;
+        }
+
+        date.setTime(System.currentTimeMillis());
+
+        StringBuilder builder = new StringBuilder();
+        appendLine(builder, dateFormat.format(date), priority, tag, message);
+        logInterface.log(priority, tag, builder.toString());
+    }
+
+    /**
+     * 一条日志的所有行合并为一次写入，而不是每行一个消息和一次文件写入
+     */
+    @Override
+    public void logRecord(int priority, String tag, List<String> lines) {
+        if (encoder != null) {
+            ((EncodedLogInterface) logInterface).log(priority,
+                    encoder.encode(System.currentTimeMillis(), priority, tag, lines));
+            return;
+        }
+
         date.setTime(System.currentTimeMillis());
+        String time = dateFormat.format(date);
 
         StringBuilder builder = new StringBuilder();
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            appendLine(builder, time, priority, tag, lines.get(i));
+        }
+        logInterface.log(priority, tag, builder.toString());
+    }
+
+    @Override
+    public boolean flush(long timeoutMillis) {
+        return !(logInterface instanceof FlushInterface) || ((FlushInterface) logInterface).flush(timeoutMillis);
+    }
 
+    private void appendLine(StringBuilder builder, String time, int priority, String tag, String message) {
         // machine-readable date/time
        // builder.append(Long.toString(date.getTime()));
 
         // human-readable date/time
        // builder.append(SEPARATOR);
-        builder.append(dateFormat.format(date));
+        builder.append(time);
 
         // level
         builder.append(SEPARATOR);
@@ -74,8 +116,6 @@ public class DiskLogFormatter implements FormatInterface {
 
         // new line
         builder.append(NEW_LINE);
-
-        logInterface.log(priority, tag, builder.toString());
     }
 
     private String formatTag(String tag) {
@@ -87,11 +127,29 @@ public class DiskLogFormatter implements FormatInterface {
 
     public static final class Builder {
         private static final int MAX_BYTES = 500 * 1024; // 500K averages to a 4000 lines per printToFile
+        private static final int FLUSH_BUFFER_SIZE = 32 * 1024;
+        private static final long FLUSH_INTERVAL = 1000;
 
         Date date;
         SimpleDateFormat dateFormat;
         LogInterface logInterface;
         String tag = "NX_LOGGER";
+        //是否使用持久打开的FileChannel批量写入
+        boolean bufferedWrite = false;
+        int flushBufferSize = FLUSH_BUFFER_SIZE;
+        long flushInterval = FLUSH_INTERVAL;
+        LogRotationListener rotationListener;
+        String folder;
+        int maxFileSize = MAX_BYTES;
+        long rollInterval = 0;
+        int maxFiles = 0;
+        long maxTotalSize = 0;
+        int maxPendingRecords = DiskLogImplement.DEFAULT_MAX_PENDING_RECORDS;
+        long maxPendingBytes = DiskLogImplement.DEFAULT_MAX_PENDING_BYTES;
+        BackpressurePolicy backpressurePolicy = BackpressurePolicy.DROP_BELOW_LEVEL;
+        int keepLevel = Logger.ERROR;
+        int indexInterval = 0;
+        DiskLogEncoder encoder;
 
         private Builder() {
         }
@@ -116,7 +174,125 @@ public class DiskLogFormatter implements FormatInterface {
             return this;
         }
 
+        /**
+         * 使用批量写入模式：文件保持打开，日志先进入缓冲区，按大小或时间阈值落盘
+         */
+        public Builder bufferedWrite(boolean val) {
+            bufferedWrite = val;
+            return this;
+        }
+
+        /**
+         * 批量写入模式下缓冲区达到该字节数时立即写入文件
+         */
+        public Builder flushBufferSize(int val) {
+            if (val < 1024) {
+                val = 1024;
+            }
+            flushBufferSize = val;
+            return this;
+        }
+
+        /**
+         * 批量写入模式下缓冲区中的日志最多等待该毫秒数就会写入文件
+         */
+        public Builder flushInterval(long val) {
+            flushInterval = val;
+            return this;
+        }
+
+        /**
+         * 日志文件写满滚动时的回调，例如 new LogCompressor() 在后台压缩旧文件
+         */
+        public Builder rotationListener(LogRotationListener val) {
+            rotationListener = val;
+            return this;
+        }
+
+        /**
+         * 日志文件所在目录，默认为外部存储根目录下的nxlogger
+         */
+        public Builder folder(String val) {
+            folder = val;
+            return this;
+        }
+
+        /**
+         * 单个日志文件的最大字节数，达到后滚动到新文件
+         */
+        public Builder maxFileSize(int val) {
+            maxFileSize = val;
+            return this;
+        }
+
+        /**
+         * 按时间滚动的间隔（毫秒），按本地时间对齐，例如 24 * 60 * 60 * 1000 为每天零点滚动。默认不按时间滚动
+         */
+        public Builder rollInterval(long val) {
+            rollInterval = val;
+            return this;
+        }
+
+        /**
+         * 最多保留的日志文件数量（包括正在写入的文件），超过后删除最旧的文件。默认不限制
+         */
+        public Builder maxFiles(int val) {
+            maxFiles = val;
+            return this;
+        }
+
+        /**
+         * 所有日志文件的最大总字节数，超过后删除最旧的文件。默认不限制
+         */
+        public Builder maxTotalSize(long val) {
+            maxTotalSize = val;
+            return this;
+        }
+
+        /**
+         * 最多等待写入的日志条数，默认8192
+         */
+        public Builder maxPendingRecords(int val) {
+            maxPendingRecords = val;
+            return this;
+        }
+
+        /**
+         * 等待写入的日志最多占用的内存字节数，默认4M
+         */
+        public Builder maxPendingBytes(long val) {
+            maxPendingBytes = val;
+            return this;
+        }
+
+        /**
+         * 等待写入的日志超过上限时的处理方式，默认为 {@link BackpressurePolicy#DROP_BELOW_LEVEL}：
+         * 丢弃低于keepLevel（默认ERROR）的日志，ERROR和ASSERT只有在超过两倍上限后才会被丢弃
+         */
+        public Builder backpressurePolicy(BackpressurePolicy val) {
+            backpressurePolicy = val;
+            return this;
+        }
+
+        /**
+         * {@link BackpressurePolicy#DROP_BELOW_LEVEL} 策略下总是保留的最低级别，ERROR和ASSERT总是保留
+         */
+        public Builder keepLevel(int val) {
+            keepLevel = val;
+            return this;
+        }
+
+        /**
+         * 每val条日志在日志文件旁的.idx文件中写一个索引块（时间范围、级别、tag），
+         * {@link LogQuery} 查询时只读取匹配的块。0表示不写索引（默认）
+         */
+        public Builder indexInterval(int val) {
+            indexInterval = val;
+            return this;
+        }
+
         public DiskLogFormatter build() {
+            boolean defaultDateFormat = dateFormat == null;
             if (date == null) {
                 date = new Date();
             }
@@ -124,15 +300,34 @@ public class DiskLogFormatter implements FormatInterface {
                 dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
             }
             if (logInterface == null) {
-                String diskPath = Environment.getExternalStorageDirectory().getPath();
-                String folder = diskPath + File.separatorChar + "nxlogger";
+                if (folder == null) {
+                    String diskPath = Environment.getExternalStorageDirectory().getPath();
+                    folder = diskPath + File.separatorChar + "nxlogger";
+                }
 
                 HandlerThread ht = new HandlerThread("AndroidFileLogger." + folder);
                 ht.start();
-                Handler handler = new DiskLogImplement.WriteHandler(ht.getLooper(), folder, MAX_BYTES);
-                logInterface = new DiskLogImplement(handler);
+                LogRotationManager rotationManager = new LogRotationManager(folder, "logs", maxFileSize,
+                        rollInterval, maxFiles, maxTotalSize, rotationListener);
+                LogIndexWriter index = indexInterval > 0 ? new LogIndexWriter(indexInterval) : null;
+                Handler handler;
+                if (bufferedWrite) {
+                    handler = new DiskLogImplement.ChannelWriteHandler(ht.getLooper(), rotationManager,
+                            flushBufferSize, flushInterval, index);
+                } else {
+                    handler = new DiskLogImplement.WriteHandler(ht.getLooper(), rotationManager, index);
+                }
+                logInterface = new DiskLogImplement.Encoded(handler, maxPendingRecords, maxPendingBytes,
+                        backpressurePolicy, keepLevel);
+            }
+            if (defaultDateFormat && logInterface instanceof EncodedLogInterface) {
+                encoder = new DiskLogEncoder();
+            }
+            DiskLogFormatter formatter = new DiskLogFormatter(this);
+            if (logInterface instanceof DiskLogImplement) {
+                ((DiskLogImplement) logInterface).setDropReporter(formatter);
             }
-            return new DiskLogFormatter(this);
+            return formatter;
         }
     }
 }
@@ -3,59 +3,141 @@ package com.nx.logger.diskLog;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
-import android.util.Log;
 
+import com.nx.logger.LogStats;
+import com.nx.logger.Logger;
+import com.nx.logger.Utils;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.FormatInterface;
 import com.nx.logger.androidBase.LogInterface;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * Abstract class that takes care of background threading the printToFile log operation on Android.
  * implementing classes are free to directly perform I/O operations there.
  */
-public class DiskLogImplement implements LogInterface {
+public class DiskLogImplement implements LogInterface, FlushInterface {
 
-    private final Handler handler;
+    static final int DEFAULT_MAX_PENDING_RECORDS = 8192;
+    static final long DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024;
 
+    final DiskLogQueue queue;
+
+    /**
+     * 使用默认的上限，超过上限时优先丢弃低于ERROR的日志
+     */
     public DiskLogImplement(Handler handler) {
-        this.handler = handler;
+        this(handler, DEFAULT_MAX_PENDING_RECORDS, DEFAULT_MAX_PENDING_BYTES, BackpressurePolicy.DROP_BELOW_LEVEL,
+                Logger.ERROR);
+    }
+
+    /**
+     * @param maxPendingRecords 最多等待写入的日志条数
+     * @param maxPendingBytes   等待写入的日志最多占用的内存字节数
+     * @param policy            超过上限时的处理方式
+     * @param keepLevel         DROP_BELOW_LEVEL策略下总是保留的最低级别
+     */
+    public DiskLogImplement(Handler handler, int maxPendingRecords, long maxPendingBytes, BackpressurePolicy policy,
+                            int keepLevel) {
+        this.queue = new DiskLogQueue(handler, maxPendingRecords, maxPendingBytes, policy, keepLevel);
     }
 
     @Override
     public void log(int level, String tag, String message) {
         // do nothing on the calling thread, simply pass the tag/msg to the background thread
-        handler.sendMessage(handler.obtainMessage(level, message));
+        //String在内存中每个字符占两个字节
+        queue.offer(level, message, message.length() * 2);
+    }
+
+    /**
+     * 在写入线程中把队列中的日志全部写入文件并落盘，调用线程最多等待timeoutMillis
+     */
+    @Override
+    public boolean flush(long timeoutMillis) {
+        return queue.flush(timeoutMillis);
+    }
+
+    void setDropReporter(FormatInterface dropReporter) {
+        queue.setDropReporter(dropReporter);
+    }
+
+    /**
+     * 记录一条日志的时间、级别和tag，旧路径的字符串日志没有tag，时间使用写入时的时间
+     *
+     * @param offset 日志在本次写入的内容中的偏移
+     */
+    static void addToIndex(LogIndexWriter index, int offset, Message msg) {
+        if (msg.obj instanceof LogBuffer) {
+            LogBuffer buffer = (LogBuffer) msg.obj;
+            index.add(offset, buffer.time, msg.what, buffer.tag);
+        } else {
+            index.add(offset, System.currentTimeMillis(), msg.what, null);
+        }
     }
 
-    static class WriteHandler extends Handler {
+    /**
+     * 内置的 {@link WriteHandler} 和 {@link ChannelWriteHandler} 可以直接写入编码好的 {@link LogBuffer}，
+     * 只有它们使用这个子类。用户通过 {@link #DiskLogImplement(Handler)} 传入的Handler仍然在msg.obj中收到String
+     */
+    static final class Encoded extends DiskLogImplement implements EncodedLogInterface {
 
-        private final String folder;
-        private final int maxFileSize;
+        Encoded(Handler handler, int maxPendingRecords, long maxPendingBytes, BackpressurePolicy policy,
+                int keepLevel) {
+            super(handler, maxPendingRecords, maxPendingBytes, policy, keepLevel);
+        }
+
+        @Override
+        public void log(int priority, LogBuffer buffer) {
+            queue.offer(priority, buffer, buffer.data().length);
+        }
+    }
+
+    static class WriteHandler extends Handler implements DiskLogQueue.Syncable {
+
+        private final LogRotationManager rotationManager;
+        private final LogIndexWriter index;
+        //最近写入的文件，sync时落盘
+        private File lastFile;
 
         WriteHandler(Looper looper, String folder, int maxFileSize) {
+            this(looper, new LogRotationManager(folder, "logs", maxFileSize, 0, 0, 0, null));
+        }
+
+        WriteHandler(Looper looper, LogRotationManager rotationManager) {
+            this(looper, rotationManager, null);
+        }
+
+        /**
+         * @param index 为null时不写索引
+         */
+        WriteHandler(Looper looper, LogRotationManager rotationManager, LogIndexWriter index) {
             super(looper);
-            this.folder = folder;
-            this.maxFileSize = maxFileSize;
+            this.rotationManager = rotationManager;
+            this.index = index;
         }
 
         @SuppressWarnings("checkstyle:emptyblock")
         @Override
         public void handleMessage(Message msg) {
-            String content = (String) msg.obj;
-
-            FileWriter fileWriter = null;
-            File logFile = getLogFile(folder, "logs");
-            if (logFile.exists()) {
-                Log.i("nx:", "logFile.exists() writeLog : " + content);
-            } else {
-                Log.i("nx:", "logFile.not exists() ");
+            if (index != null) {
+                addToIndex(index, 0, msg);
             }
+            String content = msg.obj instanceof LogBuffer
+                    ? ((LogBuffer) msg.obj).toStringAndRecycle() : (String) msg.obj;
 
+            FileWriter fileWriter = null;
+            File logFile = rotationManager.currentFile(System.currentTimeMillis());
 
             try {
                 fileWriter = new FileWriter(logFile, true);
@@ -64,7 +146,19 @@ public class DiskLogImplement implements LogInterface {
 
                 fileWriter.flush();
                 fileWriter.close();
+                lastFile = logFile;
+                int bytes = Utils.utf8Length(content);
+                if (index != null) {
+                    index.onWritten(logFile, rotationManager.currentSize(), bytes);
+                }
+                rotationManager.onWritten(bytes);
+                LogStats.getInstance().onBytesWritten(bytes);
             } catch (IOException e) {
+                LogStats.getInstance().onIoError(e);
+                rotationManager.reset();
+                if (index != null) {
+                    index.clearPending();
+                }
                 if (fileWriter != null) {
                     try {
                         fileWriter.flush();
@@ -77,6 +171,32 @@ public class DiskLogImplement implements LogInterface {
             }
         }
 
+        @Override
+        public void sync() {
+            //每条日志写完都已关闭文件，但内容可能还在系统缓存中，重新打开最近写入的文件落盘
+            if (lastFile != null) {
+                FileOutputStream out = null;
+                try {
+                    out = new FileOutputStream(lastFile, true);
+                    out.getFD().sync();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    LogStats.getInstance().onIoError(e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+            if (index != null) {
+                index.sync();
+            }
+        }
+
         /**
          * This is always called on a single background thread.
          * Implementing classes must ONLY write to the fileWriter and nothing more.
@@ -87,38 +207,188 @@ public class DiskLogImplement implements LogInterface {
         private void writeLog(FileWriter fileWriter, String content) throws IOException {
             fileWriter.append(content);
         }
+    }
 
-        private File getLogFile(String folderName, String fileName) {
+    /**
+     * 持久化的写入Handler：每个活动文件只打开一次FileChannel，连续到达的日志先编码进同一个可复用的缓冲区，
+     * 缓冲区达到阈值或距上次写入超过时间间隔时才执行一次write，而不是每行都打开、写入、关闭文件。
+     */
+    static class ChannelWriteHandler extends Handler implements DiskLogQueue.Syncable {
 
-            File folder = new File(folderName);
-            if (!folder.exists()) {
-                //TODO: What if folder is not created, what happens then?
-                folder.mkdirs();
+        private static final int MSG_FLUSH = -1;
+
+        private final LogRotationManager rotationManager;
+        private final int flushBufferSize;
+        private final long flushInterval;
+        private final LogIndexWriter index;
+
+        private final ByteBuffer buffer;
+        private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private FileChannel channel;
+        private File channelFile;
+        private boolean flushScheduled = false;
+
+        ChannelWriteHandler(Looper looper, LogRotationManager rotationManager, int flushBufferSize,
+                            long flushInterval) {
+            this(looper, rotationManager, flushBufferSize, flushInterval, null);
+        }
+
+        /**
+         * @param index 为null时不写索引
+         */
+        ChannelWriteHandler(Looper looper, LogRotationManager rotationManager, int flushBufferSize,
+                            long flushInterval, LogIndexWriter index) {
+            super(looper);
+            this.rotationManager = rotationManager;
+            this.flushBufferSize = flushBufferSize;
+            this.flushInterval = flushInterval;
+            this.index = index;
+            this.buffer = ByteBuffer.allocate(flushBufferSize);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.what == MSG_FLUSH) {
+                flush();
+                return;
+            }
+
+            if (msg.obj instanceof LogBuffer) {
+                write((LogBuffer) msg.obj, msg);
+            } else {
+                write((String) msg.obj, msg);
+            }
+
+            if (buffer.position() >= flushBufferSize) {
+                flush();
+            } else if (!flushScheduled && buffer.position() > 0) {
+                //缓冲区里有未落盘的日志，到时间后即使没有写满也要写入文件
+                flushScheduled = true;
+                sendEmptyMessageDelayed(MSG_FLUSH, flushInterval);
+            }
+        }
+
+        private void write(LogBuffer logBuffer, Message msg) {
+            int length = logBuffer.length();
+            if (buffer.remaining() < length && buffer.position() > 0) {
+                //放不下时先把之前完整的日志写出，避免一行日志被拆到两个文件中
+                flush();
+            }
+            if (index != null) {
+                addToIndex(index, buffer.position(), msg);
+            }
+            byte[] data = logBuffer.data();
+            for (int offset = 0; offset < length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(buffer.remaining(), length - offset);
+                buffer.put(data, offset, count);
+                offset += count;
+            }
+            logBuffer.recycle();
+        }
+
+        private void write(String content, Message msg) {
+            int start = buffer.position();
+            CharBuffer in = CharBuffer.wrap(content);
+            encoder.reset();
+            CoderResult result = encoder.encode(in, buffer, true);
+            if (result.isOverflow() && start > 0) {
+                //放不下时先把之前完整的日志写出，避免一行日志被拆到两个文件中
+                buffer.position(start);
+                flush();
+                start = 0;
+                in.rewind();
+                encoder.reset();
+                result = encoder.encode(in, buffer, true);
+            }
+            if (index != null) {
+                addToIndex(index, start, msg);
+            }
+            while (result.isOverflow()) {
+                flush();
+                result = encoder.encode(in, buffer, true);
             }
+        }
 
-            int newFileCount = 0;
-            File newFile;
-            File existingFile = null;
+        private void flush() {
+            if (flushScheduled) {
+                flushScheduled = false;
+                removeMessages(MSG_FLUSH);
+            }
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            try {
+                FileChannel fileChannel = getChannel();
+                long base = rotationManager.currentSize();
+                int length = buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    int written = fileChannel.write(buffer);
+                    rotationManager.onWritten(written);
+                    LogStats.getInstance().onBytesWritten(written);
+                }
+                if (index != null) {
+                    index.onWritten(channelFile, base, length);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                LogStats.getInstance().onIoError(e);
+                closeChannel();
+                rotationManager.reset();
+            } finally {
+                buffer.clear();
+                if (index != null) {
+                    index.clearPending();
+                }
+            }
+        }
 
-            Date date = new Date();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm", Locale.UK);
-            String datetime = dateFormat.format(date);
+        @Override
+        public void sync() {
+            flush();
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    LogStats.getInstance().onIoError(e);
+                }
+            }
+            if (index != null) {
+                index.sync();
+            }
+        }
 
-            newFile = new File(folder, String.format("%s_%s_%s.log", fileName, datetime, newFileCount));
-//      newFile = new File(folder, String.format("%s_%s.log", fileName, newFileCount));
-            while (newFile.exists()) {
-                existingFile = newFile;
-                newFileCount++;
-                newFile = new File(folder, String.format("%s_%s.log", fileName, newFileCount));
+        private FileChannel getChannel() throws IOException {
+            File file = rotationManager.currentFile(System.currentTimeMillis());
+            if (channel != null && !file.equals(channelFile)) {
+                closeChannel();
+            }
+            if (channel == null) {
+                channelFile = file;
+                channel = new FileOutputStream(channelFile, true).getChannel();
             }
+            return channel;
+        }
 
-            if (existingFile != null) {
-                if (existingFile.length() >= maxFileSize) {
-                    return newFile;
+        private void closeChannel() {
+            if (index != null) {
+                index.finish();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
-                return existingFile;
+                channel = null;
             }
-            return newFile;
         }
     }
-}
\ No newline at end of file
+}
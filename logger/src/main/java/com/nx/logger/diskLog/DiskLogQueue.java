@@ -0,0 +1,344 @@
+package com.nx.logger.diskLog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import com.nx.logger.LogStats;
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.FormatInterface;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用线程与文件写入线程之间的有界队列，限制待写入的日志条数和占用的内存字节数，
+ * 避免磁盘卡顿或日志风暴时Handler的消息队列无限增长。
+ * <p>
+ * 日志保存在复用的环形数组中，不为每条日志分配消息对象；队列从空变为非空时才向写入线程post一次，
+ * 写入线程一次处理完队列中所有日志。队列清空后，如果期间有日志被丢弃，写一条汇总日志说明丢弃的数量。
+ */
+final class DiskLogQueue {
+
+    private static final String DROP_TAG = "NX_LOGGER";
+    //DROP_BELOW_LEVEL策略下高级别日志最多可以超出上限的倍数，超过后按DROP_OLDEST丢弃
+    private static final int KEEP_LEVEL_OVERFLOW = 2;
+
+    private final Handler handler;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final BackpressurePolicy policy;
+    private final int keepLevel;
+
+    private final Object lock = new Object();
+    private int[] priorities = new int[16];
+    private Object[] payloads = new Object[16];
+    private int[] sizes = new int[16];
+    private long[] times = new long[16];
+    private int head;
+    private int count;
+    private long bytes;
+    //队列中低于keepLevel的日志条数，DROP_BELOW_LEVEL策略下为0时不需要查找可以丢弃的日志
+    private int belowKeepLevel;
+    private int waiters;
+    private boolean drainScheduled = false;
+    //正在执行drain的写入线程，不依赖Handler的Looper判断当前是否在写入线程
+    private volatile Thread writerThread;
+    //上次汇总之后丢弃的日志数量
+    private int dropped;
+
+    private FormatInterface dropReporter;
+
+    /**
+     * 带缓冲区的写入Handler，把缓冲区中的内容写入文件并落盘
+     */
+    interface Syncable {
+        void sync();
+    }
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param keepLevel DROP_BELOW_LEVEL策略下总是保留的最低级别，不会高于ERROR
+     */
+    DiskLogQueue(Handler handler, int maxRecords, long maxBytes, BackpressurePolicy policy, int keepLevel) {
+        this.handler = handler;
+        this.maxRecords = Math.max(maxRecords, 1);
+        this.maxBytes = Math.max(maxBytes, 1);
+        this.policy = policy != null ? policy : BackpressurePolicy.DROP_BELOW_LEVEL;
+        this.keepLevel = Math.min(keepLevel, Logger.ERROR);
+    }
+
+    /**
+     * 队列清空后用来写丢弃汇总的formatter，汇总和普通日志使用相同的格式
+     */
+    void setDropReporter(FormatInterface dropReporter) {
+        this.dropReporter = dropReporter;
+    }
+
+    /**
+     * @param payload 已格式化的String或LogBuffer
+     * @param size    payload占用的内存字节数
+     */
+    void offer(int priority, Object payload, int size) {
+        boolean accepted = true;
+        synchronized (lock) {
+            if (isFull(size)) {
+                switch (policy) {
+                    case BLOCK:
+                        if (!isWriterThread()) {
+                            waiters++;
+                            try {
+                                while (isFull(size) && count > 0) {
+                                    lock.wait();
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                accepted = false;
+                            } finally {
+                                waiters--;
+                            }
+                        } else {
+                            accepted = false;
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        evictOldestLocked(size, 1);
+                        break;
+                    case DROP_BELOW_LEVEL:
+                        accepted = priority >= keepLevel;
+                        if (accepted) {
+                            //先丢弃队列中的低级别日志，仍然放不下时允许超出上限，但不超过KEEP_LEVEL_OVERFLOW倍
+                            evictBelowKeepLevelLocked(size);
+                            evictOldestLocked(size, KEEP_LEVEL_OVERFLOW);
+                        }
+                        break;
+                    case DROP_NEWEST:
+                    default:
+                        accepted = false;
+                        break;
+                }
+            }
+            if (accepted) {
+                addLocked(priority, payload, size);
+                if (!drainScheduled) {
+                    drainScheduled = true;
+                    handler.post(drainTask);
+                }
+            } else {
+                dropped++;
+            }
+        }
+        if (accepted) {
+            LogStats.getInstance().onEnqueued();
+        } else {
+            discard(priority, payload);
+        }
+    }
+
+    /**
+     * 在写入线程中立即写出队列中的所有日志并落盘，调用线程等待完成
+     *
+     * @return 超时或写入线程已经退出时返回false
+     */
+    boolean flush(long timeoutMillis) {
+        final CountDownLatch done = new CountDownLatch(1);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain();
+                    if (handler instanceof Syncable) {
+                        ((Syncable) handler).sync();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        if (isWriterThread()) {
+            task.run();
+            return true;
+        }
+        //排在已经在处理的消息之后，不需要等待定时flush等其他消息
+        if (!handler.postAtFrontOfQueue(task)) {
+            return false;
+        }
+        try {
+            return done.await(Math.max(timeoutMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean isFull(int size) {
+        return isFull(size, 1);
+    }
+
+    /**
+     * @param factor 上限的倍数
+     */
+    private boolean isFull(int size, int factor) {
+        return count >= (long) maxRecords * factor || bytes + size > maxBytes * factor;
+    }
+
+    /**
+     * 从最旧的日志开始丢弃，直到不超过factor倍的上限
+     */
+    private void evictOldestLocked(int size, int factor) {
+        while (isFull(size, factor) && count > 0) {
+            LogStats.getInstance().onEvicted(priorities[head]);
+            Object evicted = pollLocked();
+            if (evicted instanceof LogBuffer) {
+                ((LogBuffer) evicted).recycle();
+            }
+            dropped++;
+        }
+    }
+
+    /**
+     * 从最旧的开始丢弃队列中低于keepLevel的日志，直到不超过上限，其余日志保持原来的顺序
+     */
+    private void evictBelowKeepLevelLocked(int size) {
+        if (belowKeepLevel == 0) {
+            return;
+        }
+        int length = payloads.length;
+        int kept = 0;
+        int total = count;
+        for (int i = 0; i < total; i++) {
+            int from = (head + i) % length;
+            if (priorities[from] < keepLevel && isFull(size)) {
+                LogStats.getInstance().onEvicted(priorities[from]);
+                if (payloads[from] instanceof LogBuffer) {
+                    ((LogBuffer) payloads[from]).recycle();
+                }
+                payloads[from] = null;
+                bytes -= sizes[from];
+                count--;
+                belowKeepLevel--;
+                dropped++;
+                continue;
+            }
+            int to = (head + kept) % length;
+            if (to != from) {
+                priorities[to] = priorities[from];
+                payloads[to] = payloads[from];
+                sizes[to] = sizes[from];
+                times[to] = times[from];
+                payloads[from] = null;
+            }
+            kept++;
+        }
+    }
+
+    private boolean isWriterThread() {
+        Thread current = Thread.currentThread();
+        if (current == writerThread) {
+            return true;
+        }
+        Looper looper = handler.getLooper();
+        return looper != null && looper.getThread() == current;
+    }
+
+    private void discard(int priority, Object payload) {
+        LogStats.getInstance().onDropped(priority);
+        if (payload instanceof LogBuffer) {
+            ((LogBuffer) payload).recycle();
+        }
+    }
+
+    /**
+     * 在写入线程中执行，依次把队列中的日志交给写入Handler
+     */
+    private void drain() {
+        writerThread = Thread.currentThread();
+        //整个drain复用同一个Message，用完不归还，因此不从全局池中取
+        Message msg = new Message();
+        int report;
+        while (true) {
+            int priority;
+            Object payload;
+            long time;
+            synchronized (lock) {
+                if (count == 0) {
+                    drainScheduled = false;
+                    report = dropped;
+                    dropped = 0;
+                    break;
+                }
+                priority = priorities[head];
+                time = times[head];
+                payload = pollLocked();
+                if (waiters > 0) {
+                    lock.notifyAll();
+                }
+            }
+            LogStats.getInstance().onDequeued(SystemClock.uptimeMillis() - time);
+            msg.what = priority;
+            msg.obj = payload;
+            handler.handleMessage(msg);
+        }
+        msg.obj = null;
+
+        if (report > 0 && dropReporter != null) {
+            dropReporter.log(Logger.WARN, DROP_TAG, "disk log queue was full, dropped " + report
+                    + " log records (" + policy + ")");
+        }
+    }
+
+    private void addLocked(int priority, Object payload, int size) {
+        if (count == payloads.length) {
+            grow();
+        }
+        int index = (head + count) % payloads.length;
+        priorities[index] = priority;
+        payloads[index] = payload;
+        sizes[index] = size;
+        times[index] = SystemClock.uptimeMillis();
+        count++;
+        bytes += size;
+        if (priority < keepLevel) {
+            belowKeepLevel++;
+        }
+    }
+
+    private Object pollLocked() {
+        if (priorities[head] < keepLevel) {
+            belowKeepLevel--;
+        }
+        Object payload = payloads[head];
+        payloads[head] = null;
+        bytes -= sizes[head];
+        head = (head + 1) % payloads.length;
+        count--;
+        return payload;
+    }
+
+    private void grow() {
+        int capacity = payloads.length * 2;
+        int[] newPriorities = new int[capacity];
+        Object[] newPayloads = new Object[capacity];
+        int[] newSizes = new int[capacity];
+        long[] newTimes = new long[capacity];
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % payloads.length;
+            newPriorities[i] = priorities[index];
+            newPayloads[i] = payloads[index];
+            newSizes[i] = sizes[index];
+            newTimes[i] = times[index];
+        }
+        priorities = newPriorities;
+        payloads = newPayloads;
+        sizes = newSizes;
+        times = newTimes;
+        head = 0;
+    }
+}
@@ -0,0 +1,9 @@
+package com.nx.logger.diskLog;
+
+/**
+ * 可以直接写入已编码字节的日志输出，写入完成后负责调用 {@link LogBuffer#recycle()}
+ */
+public interface EncodedLogInterface {
+
+    void log(int priority, LogBuffer buffer);
+}
@@ -0,0 +1,77 @@
+package com.nx.logger.diskLog;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 池化的字节缓冲区，保存一条已经编码为UTF-8的日志。
+ * 由 {@link DiskLogEncoder} 从池中取出并填充，交给 {@link EncodedLogInterface} 写入后调用 {@link #recycle()} 归还。
+ * 池本身无锁，稳定状态下编码日志不产生新的对象。
+ */
+public final class LogBuffer {
+
+    private static final int POOL_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 256;
+    //超过该大小的缓冲区不归还到池中，避免长期占用大块内存
+    private static final int MAX_POOLED_CAPACITY = 16 * 1024;
+
+    private static final AtomicReferenceArray<LogBuffer> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    byte[] data = new byte[INITIAL_CAPACITY];
+    int length;
+    //写索引时使用，由编码者填写
+    long time;
+    String tag;
+
+    private LogBuffer() {
+    }
+
+    public static LogBuffer obtain() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            LogBuffer buffer = POOL.get(i);
+            if (buffer != null && POOL.compareAndSet(i, buffer, null)) {
+                buffer.length = 0;
+                buffer.tag = null;
+                return buffer;
+            }
+        }
+        return new LogBuffer();
+    }
+
+    public void recycle() {
+        if (data.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (POOL.get(i) == null && POOL.compareAndSet(i, null, this)) {
+                return;
+            }
+        }
+    }
+
+    public byte[] data() {
+        return data;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 解码为字符串并归还缓冲区，只用于不支持字节写入的旧路径
+     */
+    String toStringAndRecycle() {
+        String content = new String(data, 0, length, Charset.forName("UTF-8"));
+        recycle();
+        return content;
+    }
+
+    void ensureCapacity(int extra) {
+        int required = length + extra;
+        if (required > data.length) {
+            byte[] larger = new byte[Math.max(required, data.length * 2)];
+            System.arraycopy(data, 0, larger, 0, length);
+            data = larger;
+        }
+    }
+}
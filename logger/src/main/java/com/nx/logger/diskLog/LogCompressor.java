@@ -0,0 +1,125 @@
+package com.nx.logger.diskLog;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.nx.logger.LogStats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把滚动后关闭的日志文件用gzip流式压缩为 xxx.gz，并删除原文件。
+ * 压缩在单独的低优先级线程中进行，不会占用写日志的线程。文本日志通常可以压缩到十分之一以下。
+ * <p>
+ * 使用方式：DiskLogFormatter.newBuilder().rotationListener(new LogCompressor()).build()
+ * 压缩后的文件可以用 {@link LogFileReader} 直接读取。
+ */
+public class LogCompressor implements LogRotationListener {
+
+    public static final String SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Handler handler;
+
+    public LogCompressor() {
+        HandlerThread ht = new HandlerThread("AndroidLogCompressor", Process.THREAD_PRIORITY_LOWEST);
+        ht.start();
+        handler = new Handler(ht.getLooper());
+    }
+
+    @Override
+    public void onRotated(final File closedFile) {
+        if (closedFile.getName().endsWith(SUFFIX)) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                compress(closedFile);
+            }
+        });
+    }
+
+    /**
+     * 同步压缩文件，成功后删除原文件
+     *
+     * @return 压缩后的文件，失败时返回null
+     */
+    public static File compress(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        File target = new File(file.getPath() + SUFFIX);
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(file);
+            out = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            out.close();
+            out = null;
+            //先写临时文件再改名，进程中途被杀死也不会留下不完整的.gz文件
+            if (!temp.renameTo(target)) {
+                throw new IOException("rename failed: " + temp);
+            }
+            file.delete();
+            return target;
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogStats.getInstance().onIoError(e);
+            temp.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * 读取gzip文件尾部记录的压缩前大小（ISIZE，按2^32取模，日志文件不会超过这个大小）
+     *
+     * @return 压缩前的字节数，读取失败时返回文件本身的大小
+     */
+    static long uncompressedSize(File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            long length = raf.length();
+            if (length < 4) {
+                return length;
+            }
+            raf.seek(length - 4);
+            //ISIZE是小端序
+            return (raf.read() | raf.read() << 8 | raf.read() << 16 | (long) raf.read() << 24) & 0xFFFFFFFFL;
+        } catch (IOException e) {
+            return file.length();
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                /* fail silently */
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.nx.logger.diskLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 打开日志文件，自动识别 {@link LogCompressor} 压缩过的 .gz 文件，对调用方透明。
+ * 不依赖Android，可以在PC上使用。
+ */
+public final class LogFileReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private LogFileReader() {
+        //no instance
+    }
+
+    /**
+     * @return 解压后的原始内容
+     */
+    public static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * 以UTF-8按行读取文本日志
+     */
+    public static BufferedReader openReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(file), "UTF-8"));
+    }
+}
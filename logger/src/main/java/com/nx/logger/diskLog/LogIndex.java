@@ -0,0 +1,116 @@
+package com.nx.logger.diskLog;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本日志分段的稀疏索引，与分段文件放在同一目录：logs_xxx.log 的索引为 logs_xxx.log.idx，
+ * 分段被 {@link LogCompressor} 压缩为 .gz 后索引仍然有效（偏移是解压后的位置）。
+ * <p>
+ * 文件格式：文件头 [INDEX_MAGIC(4) VERSION(1)]，之后是固定长度的块：
+ * [offset(8) length(4) minTime(8) maxTime(8) count(4) levelMask(1) tagBits(8)]，
+ * 每个块覆盖分段中连续的若干条完整日志。levelMask的第n位表示块中有级别为n的日志，
+ * tagBits是tag的64位布隆过滤器。没有被任何块覆盖的区域（例如进程被杀死时最后一个块还没有写出）查询时直接扫描。
+ */
+final class LogIndex {
+
+    static final String SUFFIX = ".idx";
+    static final int INDEX_MAGIC = 0x4E584C49; // "NXLI"
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 5;
+    static final int ENTRY_SIZE = 41;
+
+    //没有tag信息的日志，块可能包含任何tag
+    static final long ALL_TAGS = -1L;
+
+    private LogIndex() {
+        //no instance
+    }
+
+    /**
+     * @return 分段对应的索引文件，压缩后的分段与压缩前使用同一个索引
+     */
+    static File indexFile(File segment) {
+        String path = segment.getPath();
+        if (path.endsWith(LogCompressor.SUFFIX)) {
+            path = path.substring(0, path.length() - LogCompressor.SUFFIX.length());
+        }
+        return new File(path + SUFFIX);
+    }
+
+    /**
+     * tag在布隆过滤器中对应的两位，显示线程信息时tag末尾的"[线程名]"不计算在内
+     */
+    static long tagBits(String tag) {
+        if (tag == null) {
+            return ALL_TAGS;
+        }
+        int threadStart = tag.endsWith("]") ? tag.lastIndexOf('[') : -1;
+        if (threadStart > 0) {
+            tag = tag.substring(0, threadStart);
+        }
+        int hash = tag.hashCode();
+        return (1L << (hash & 63)) | (1L << ((hash >>> 6) & 63));
+    }
+
+    /**
+     * @return 按写入顺序排列的块，没有索引文件时返回空列表。末尾不完整的块被忽略
+     */
+    static List<Block> read(File indexFile) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        if (!indexFile.exists()) {
+            return blocks;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != INDEX_MAGIC || in.readByte() != VERSION) {
+                return blocks;
+            }
+            while (true) {
+                long offset = in.readLong();
+                int length = in.readInt();
+                long minTime = in.readLong();
+                long maxTime = in.readLong();
+                int count = in.readInt();
+                int levelMask = in.readUnsignedByte();
+                long tagBits = in.readLong();
+                blocks.add(new Block(offset, length, minTime, maxTime, count, levelMask, tagBits));
+            }
+        } catch (EOFException e) {
+            //读到末尾，最后一个块可能没有写完整
+        } finally {
+            in.close();
+        }
+        return blocks;
+    }
+
+    static final class Block {
+        final long offset;
+        final int length;
+        final long minTime;
+        final long maxTime;
+        final int count;
+        final int levelMask;
+        final long tagBits;
+
+        Block(long offset, int length, long minTime, long maxTime, int count, int levelMask, long tagBits) {
+            this.offset = offset;
+            this.length = length;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+            this.levelMask = levelMask;
+            this.tagBits = tagBits;
+        }
+
+        long end() {
+            return offset + length;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.LogStats;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 在写文件的线程中为文本日志分段生成 {@link LogIndex}：每interval条日志写一个块。
+ * <p>
+ * 日志先进入写入Handler的缓冲区，写入文件时才确定所在的文件和偏移，因此先用 {@link #add} 记录日志在本次写入中的偏移，
+ * 写入文件后再用 {@link #onWritten} 换算为文件中的位置。只能在写日志的单个后台线程中使用。
+ */
+final class LogIndexWriter {
+
+    private final int interval;
+    private final ByteBuffer entry = ByteBuffer.allocate(LogIndex.ENTRY_SIZE);
+
+    //本次写入中还没有确定文件位置的日志
+    private int pendingCount;
+    private int[] pendingOffsets = new int[64];
+    private long[] pendingTimes = new long[64];
+    private int[] pendingLevels = new int[64];
+    private String[] pendingTags = new String[64];
+
+    private File file;
+    private FileOutputStream out;
+    //当前文件已写入的末尾位置
+    private long fileEnd;
+
+    //当前块，blockCount为0时还没有开始
+    private long blockStart;
+    private long blockMinTime;
+    private long blockMaxTime;
+    private int blockCount;
+    private int blockLevels;
+    private long blockTags;
+
+    /**
+     * @param interval 每个块包含的日志条数
+     */
+    LogIndexWriter(int interval) {
+        this.interval = Math.max(interval, 1);
+    }
+
+    /**
+     * 一条日志写入缓冲区时调用
+     *
+     * @param offset 日志在本次写入的内容中的偏移
+     * @param tag    为null时表示不知道tag
+     */
+    void add(int offset, long time, int priority, String tag) {
+        if (pendingCount == pendingOffsets.length) {
+            int capacity = pendingCount * 2;
+            int[] offsets = new int[capacity];
+            long[] times = new long[capacity];
+            int[] levels = new int[capacity];
+            String[] tags = new String[capacity];
+            System.arraycopy(pendingOffsets, 0, offsets, 0, pendingCount);
+            System.arraycopy(pendingTimes, 0, times, 0, pendingCount);
+            System.arraycopy(pendingLevels, 0, levels, 0, pendingCount);
+            System.arraycopy(pendingTags, 0, tags, 0, pendingCount);
+            pendingOffsets = offsets;
+            pendingTimes = times;
+            pendingLevels = levels;
+            pendingTags = tags;
+        }
+        pendingOffsets[pendingCount] = offset;
+        pendingTimes[pendingCount] = time;
+        pendingLevels[pendingCount] = priority;
+        pendingTags[pendingCount] = tag;
+        pendingCount++;
+    }
+
+    /**
+     * 缓冲区中的内容写入文件后调用
+     *
+     * @param base   写入前文件的大小
+     * @param length 写入的字节数
+     */
+    void onWritten(File target, long base, int length) {
+        if (!target.equals(file)) {
+            finish();
+            open(target);
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            long offset = base + pendingOffsets[i];
+            if (blockCount >= interval) {
+                writeBlock(offset);
+            }
+            if (blockCount == 0) {
+                blockStart = offset;
+                blockMinTime = Long.MAX_VALUE;
+                blockMaxTime = Long.MIN_VALUE;
+                blockLevels = 0;
+                blockTags = 0;
+            }
+            long time = pendingTimes[i];
+            blockMinTime = Math.min(blockMinTime, time);
+            blockMaxTime = Math.max(blockMaxTime, time);
+            blockLevels |= 1 << (pendingLevels[i] & 7);
+            blockTags |= LogIndex.tagBits(pendingTags[i]);
+            blockCount++;
+        }
+        fileEnd = base + length;
+        clearPending();
+    }
+
+    /**
+     * 写入失败时丢弃还没有确定位置的日志
+     */
+    void clearPending() {
+        for (int i = 0; i < pendingCount; i++) {
+            pendingTags[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * 立即写出当前不完整的块，用于崩溃前落盘。之后的日志从新的块开始
+     */
+    void sync() {
+        if (blockCount > 0) {
+            writeBlock(fileEnd);
+        }
+        if (out != null) {
+            try {
+                out.getFD().sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 当前文件不再写入时写出最后一个块并关闭索引文件
+     */
+    void finish() {
+        if (blockCount > 0) {
+            writeBlock(fileEnd);
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+        file = null;
+    }
+
+    private void open(File target) {
+        file = target;
+        fileEnd = 0;
+        blockCount = 0;
+        File indexFile = LogIndex.indexFile(target);
+        try {
+            boolean empty = indexFile.length() == 0;
+            out = new FileOutputStream(indexFile, true);
+            if (empty) {
+                ByteBuffer header = ByteBuffer.allocate(LogIndex.HEADER_SIZE);
+                header.putInt(LogIndex.INDEX_MAGIC).put(LogIndex.VERSION);
+                out.write(header.array());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogStats.getInstance().onIoError(e);
+            out = null;
+        }
+    }
+
+    /**
+     * @param end 块的结束位置，即下一条日志的开始位置
+     */
+    private void writeBlock(long end) {
+        if (out != null) {
+            entry.clear();
+            entry.putLong(blockStart)
+                    .putInt((int) (end - blockStart))
+                    .putLong(blockMinTime)
+                    .putLong(blockMaxTime)
+                    .putInt(blockCount)
+                    .put((byte) blockLevels)
+                    .putLong(blockTags);
+            try {
+                out.write(entry.array());
+            } catch (IOException e) {
+                e.printStackTrace();
+                LogStats.getInstance().onIoError(e);
+            }
+        }
+        blockCount = 0;
+    }
+}
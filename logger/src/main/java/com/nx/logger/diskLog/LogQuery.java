@@ -0,0 +1,534 @@
+package com.nx.logger.diskLog;
+
+import android.annotation.TargetApi;
+
+import com.nx.logger.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 按时间、级别、tag和内容查询 {@link DiskLogFormatter} 写入的文本日志分段（包括 {@link LogCompressor} 压缩后的.gz文件）：
+ * <pre>
+ * LogQuery query = LogQuery.newBuilder().from(start).to(end).minLevel(Logger.ERROR).build();
+ * List&lt;String&gt; lines = query.query(LogQuery.listSegments(new File("nxlogger")));
+ * </pre>
+ * 分段有 {@link DiskLogFormatter.Builder#indexInterval} 生成的索引时，只读取时间范围、级别和tag可能匹配的块，
+ * 其余部分直接跳过（压缩文件仍需解压跳过的部分，但不再逐行解析）；没有索引的分段或索引未覆盖的部分逐行扫描。
+ * 多个分段在ForkJoinPool中并行查询，结果按分段顺序返回。
+ * <p>
+ * ForkJoinPool在Android上需要API 21，本类主要用于在PC上查询从设备取出的日志目录，
+ * 在设备上使用时调用者需要自己判断系统版本。不依赖Android，可以在PC上直接运行：
+ * java com.nx.logger.diskLog.LogQuery --from "2016.10.17 10:00:00" --to "2016.10.17 10:10:00" --level ERROR nxlogger/
+ * 时间按运行查询程序的机器所在时区解析。
+ */
+@TargetApi(21)
+public final class LogQuery {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //"yyyy.MM.dd HH:mm:ss.SSS"
+    private static final int TIME_LENGTH = 23;
+    private static final int SECOND_PREFIX_LENGTH = 20;
+
+    private final long from;
+    private final long to;
+    private final int minLevel;
+    private final String tag;
+    private final long tagBits;
+    private final String text;
+    private final int parallelism;
+
+    private LogQuery(Builder builder) {
+        from = builder.from;
+        to = builder.to;
+        minLevel = builder.minLevel;
+        tag = builder.tag;
+        tagBits = builder.tag == null ? 0 : LogIndex.tagBits(builder.tag);
+        text = builder.text;
+        parallelism = builder.parallelism;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 目录中的文本日志分段（.log和.log.gz），按写入顺序排列
+     */
+    public static List<File> listSegments(File folder) {
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return file.isFile() && (name.endsWith(".log") || name.endsWith(".log" + LogCompressor.SUFFIX));
+            }
+        });
+        List<File> segments = files == null ? new ArrayList<File>() : new ArrayList<>(Arrays.asList(files));
+        Collections.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                int l = sequenceOf(lhs);
+                int r = sequenceOf(rhs);
+                if (l != r) {
+                    return l < r ? -1 : 1;
+                }
+                return lhs.getName().compareTo(rhs.getName());
+            }
+        });
+        return segments;
+    }
+
+    /**
+     * 并行查询多个分段，读取失败的分段打印异常后跳过
+     *
+     * @return 所有匹配的行，按分段的顺序
+     */
+    public List<String> query(List<File> segments) {
+        //每个子任务只写自己的位置，不改变列表结构
+        List<List<String>> results = new ArrayList<>(Collections.<List<String>>nCopies(segments.size(), null));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SegmentsTask(segments, results, 0, segments.size()));
+        } finally {
+            pool.shutdown();
+        }
+        List<String> lines = new ArrayList<>();
+        for (List<String> result : results) {
+            lines.addAll(result);
+        }
+        return lines;
+    }
+
+    /**
+     * @return 匹配的行数
+     */
+    public int query(List<File> segments, Writer out) throws IOException {
+        List<String> lines = query(segments);
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            out.write(lines.get(i));
+            out.write('\n');
+        }
+        return lines.size();
+    }
+
+    /**
+     * 查询单个分段
+     */
+    public List<String> query(File segment) throws IOException {
+        List<long[]> ranges = ranges(LogIndex.read(LogIndex.indexFile(segment)));
+        List<String> lines = new ArrayList<>();
+        LineMatcher matcher = new LineMatcher();
+        RangeReader reader = new RangeReader(LogFileReader.open(segment));
+        try {
+            for (long[] range : ranges) {
+                if (!reader.seek(range[0])) {
+                    break;
+                }
+                String line;
+                while (reader.position() < range[1] && (line = reader.readLine()) != null) {
+                    if (matcher.matches(line)) {
+                        lines.add(line);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            //压缩文件不完整（例如复制时还在压缩），保留已经读到的结果
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * @return 需要读取的 [start, end) 区间：匹配的块和没有被索引覆盖的部分，相邻的区间合并
+     */
+    private List<long[]> ranges(List<LogIndex.Block> blocks) {
+        Collections.sort(blocks, new Comparator<LogIndex.Block>() {
+            @Override
+            public int compare(LogIndex.Block lhs, LogIndex.Block rhs) {
+                return lhs.offset < rhs.offset ? -1 : (lhs.offset == rhs.offset ? 0 : 1);
+            }
+        });
+        List<long[]> ranges = new ArrayList<>();
+        long position = 0;
+        for (LogIndex.Block block : blocks) {
+            if (block.offset > position) {
+                addRange(ranges, position, block.offset);
+            }
+            if (matches(block)) {
+                addRange(ranges, block.offset, block.end());
+            }
+            position = Math.max(position, block.end());
+        }
+        //最后一个块之后还没有写索引的部分
+        addRange(ranges, position, Long.MAX_VALUE);
+        return ranges;
+    }
+
+    private static void addRange(List<long[]> ranges, long start, long end) {
+        long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[1] >= start) {
+            last[1] = Math.max(last[1], end);
+        } else {
+            ranges.add(new long[]{start, end});
+        }
+    }
+
+    private boolean matches(LogIndex.Block block) {
+        return block.maxTime >= from && block.minTime <= to
+                && (block.levelMask >>> minLevel) != 0
+                && (block.tagBits & tagBits) == tagBits;
+    }
+
+    /**
+     * 逐行匹配，每个分段一个实例，缓存当前这一秒的时间
+     */
+    private final class LineMatcher {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.", Locale.UK);
+        private String secondPrefix;
+        private long secondTime;
+
+        boolean matches(String line) {
+            if (from == Long.MIN_VALUE && to == Long.MAX_VALUE && minLevel <= Logger.VERBOSE && tag == null
+                    && text == null) {
+                return true;
+            }
+            //yyyy.MM.dd HH:mm:ss.SSS,LEVEL,tag:message
+            int levelEnd = line.indexOf(',', TIME_LENGTH + 1);
+            int tagEnd = levelEnd < 0 ? -1 : line.indexOf(':', levelEnd + 1);
+            if (line.length() <= TIME_LENGTH || line.charAt(TIME_LENGTH) != ',' || tagEnd < 0) {
+                return false;
+            }
+            if (minLevel > Logger.VERBOSE && levelOf(line.substring(TIME_LENGTH + 1, levelEnd)) < minLevel) {
+                return false;
+            }
+            //tag中可能有':'，不能用tagEnd判断；显示线程信息时tag之后是"[线程名]"
+            if (tag != null && !(line.startsWith(tag, levelEnd + 1)
+                    && (line.startsWith(":", levelEnd + 1 + tag.length())
+                    || line.startsWith("[", levelEnd + 1 + tag.length())))) {
+                return false;
+            }
+            if (text != null && line.indexOf(text, tagEnd + 1) < 0) {
+                return false;
+            }
+            if (from != Long.MIN_VALUE || to != Long.MAX_VALUE) {
+                long time = timeOf(line);
+                return time >= from && time <= to;
+            }
+            return true;
+        }
+
+        private long timeOf(String line) {
+            if (secondPrefix == null || !line.startsWith(secondPrefix)) {
+                String prefix = line.substring(0, SECOND_PREFIX_LENGTH);
+                try {
+                    secondTime = dateFormat.parse(prefix).getTime();
+                } catch (ParseException e) {
+                    return Long.MIN_VALUE;
+                }
+                secondPrefix = prefix;
+            }
+            int millis = 0;
+            for (int i = SECOND_PREFIX_LENGTH; i < TIME_LENGTH; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Long.MIN_VALUE;
+                }
+                millis = millis * 10 + (c - '0');
+            }
+            return secondTime + millis;
+        }
+    }
+
+    /**
+     * 在解压后的内容中按字节位置跳转并按行读取，行以'\n'结尾
+     */
+    private static final class RangeReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private byte[] line = new byte[256];
+        private int start;
+        private int end;
+        //buffer[start]在文件中的位置
+        private long position;
+
+        RangeReader(InputStream in) {
+            this.in = in;
+        }
+
+        long position() {
+            return position;
+        }
+
+        /**
+         * @return 是否到达了target，文件没有这么长时返回false
+         */
+        boolean seek(long target) throws IOException {
+            long skip = target - position;
+            if (skip <= end - start) {
+                start += (int) skip;
+                position = target;
+                return true;
+            }
+            position += end - start;
+            start = end = 0;
+            while (position < target) {
+                long skipped = in.skip(target - position);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        return false;
+                    }
+                    skipped = 1;
+                }
+                position += skipped;
+            }
+            return true;
+        }
+
+        /**
+         * @return 去掉换行符的一行，到达文件末尾时返回null
+         */
+        String readLine() throws IOException {
+            int length = 0;
+            while (true) {
+                if (start == end) {
+                    int count = in.read(buffer, 0, buffer.length);
+                    if (count < 0) {
+                        return length == 0 ? null : decode(length);
+                    }
+                    start = 0;
+                    end = count;
+                }
+                int i = start;
+                while (i < end && buffer[i] != '\n') {
+                    i++;
+                }
+                int count = i - start;
+                if (length + count > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+                }
+                System.arraycopy(buffer, start, line, length, count);
+                length += count;
+                position += count;
+                start = i;
+                if (i < end) {
+                    start++;
+                    position++;
+                    return decode(length);
+                }
+            }
+        }
+
+        private String decode(int length) {
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, UTF_8);
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 把分段不断二分，每个分段在一个子任务中查询
+     */
+    private final class SegmentsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> segments;
+        private final List<List<String>> results;
+        private final int start;
+        private final int end;
+
+        SegmentsTask(List<File> segments, List<List<String>> results, int start, int end) {
+            this.segments = segments;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SegmentsTask(segments, results, start, middle),
+                        new SegmentsTask(segments, results, middle, end));
+                return;
+            }
+            if (end == start) {
+                return;
+            }
+            try {
+                results.set(start, query(segments.get(start)));
+            } catch (IOException e) {
+                e.printStackTrace();
+                results.set(start, Collections.<String>emptyList());
+            }
+        }
+    }
+
+    private static int levelOf(String level) {
+        switch (level) {
+            case "VERBOSE":
+                return Logger.VERBOSE;
+            case "DEBUG":
+                return Logger.DEBUG;
+            case "INFO":
+                return Logger.INFO;
+            case "WARN":
+                return Logger.WARN;
+            case "ERROR":
+                return Logger.ERROR;
+            case "ASSERT":
+                return Logger.ASSERT;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return 文件名 logs_yyyy-MM-dd_HH-mm_序号.log 中的序号，没有序号时返回-1
+     */
+    private static int sequenceOf(File file) {
+        String name = file.getName();
+        if (name.endsWith(LogCompressor.SUFFIX)) {
+            name = name.substring(0, name.length() - LogCompressor.SUFFIX.length());
+        }
+        int end = name.lastIndexOf('.');
+        int start = name.lastIndexOf('_', end) + 1;
+        try {
+            return Integer.parseInt(name.substring(start, end));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    public static final class Builder {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        int minLevel = Logger.VERBOSE;
+        String tag;
+        String text;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        /**
+         * 时间范围的开始（毫秒，包含）
+         */
+        public Builder from(long val) {
+            from = val;
+            return this;
+        }
+
+        /**
+         * 时间范围的结束（毫秒，包含）
+         */
+        public Builder to(long val) {
+            to = val;
+            return this;
+        }
+
+        /**
+         * 只查询该级别及以上的日志，例如 {@link Logger#ERROR}
+         */
+        public Builder minLevel(int val) {
+            minLevel = val;
+            return this;
+        }
+
+        /**
+         * 只查询该tag的日志，包括显示线程信息时的 tag[线程名]
+         */
+        public Builder tag(String val) {
+            tag = val;
+            return this;
+        }
+
+        /**
+         * 只查询消息中包含该文本的日志
+         */
+        public Builder contains(String val) {
+            text = val;
+            return this;
+        }
+
+        /**
+         * 同时查询的分段数量，默认为CPU核数
+         */
+        public Builder parallelism(int val) {
+            parallelism = Math.max(val, 1);
+            return this;
+        }
+
+        public LogQuery build() {
+            return new LogQuery(this);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Builder builder = newBuilder();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss", Locale.UK);
+        List<File> segments = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--from")) {
+                    builder.from(dateFormat.parse(args[++i]).getTime());
+                } else if (arg.equals("--to")) {
+                    builder.to(dateFormat.parse(args[++i]).getTime());
+                } else if (arg.equals("--level")) {
+                    int level = levelOf(args[++i].toUpperCase(Locale.UK));
+                    if (level < 0) {
+                        throw new IllegalArgumentException("Unknown level " + args[i]);
+                    }
+                    builder.minLevel(level);
+                } else if (arg.equals("--tag")) {
+                    builder.tag(args[++i]);
+                } else if (arg.equals("--grep")) {
+                    builder.contains(args[++i]);
+                } else if (arg.equals("-j")) {
+                    builder.parallelism(Integer.parseInt(args[++i]));
+                } else {
+                    File file = new File(arg);
+                    if (file.isDirectory()) {
+                        segments.addAll(listSegments(file));
+                    } else {
+                        segments.add(file);
+                    }
+                }
+            }
+        } catch (ParseException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            segments.clear();
+            System.err.println(e.getMessage());
+        }
+        if (segments.isEmpty()) {
+            System.err.println("usage: LogQuery [--from \"yyyy.MM.dd HH:mm:ss\"] [--to \"yyyy.MM.dd HH:mm:ss\"]"
+                    + " [--level ERROR] [--tag tag] [--grep text] [-j threads] <segment or folder>...");
+            System.exit(1);
+        }
+        Writer out = new OutputStreamWriter(System.out, UTF_8);
+        builder.build().query(segments, out);
+        out.flush();
+    }
+}
@@ -0,0 +1,14 @@
+package com.nx.logger.diskLog;
+
+import java.io.File;
+
+/**
+ * 日志文件滚动时的回调，在写文件的后台线程中调用，实现类不应在回调中执行耗时操作
+ */
+public interface LogRotationListener {
+
+    /**
+     * @param closedFile 已经写满并关闭、之后不会再写入的日志文件
+     */
+    void onRotated(File closedFile);
+}
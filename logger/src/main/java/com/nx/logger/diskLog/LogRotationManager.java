@@ -0,0 +1,253 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.LogStats;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 文本日志文件的滚动管理。启动后第一次写入时扫描一次目录，之后当前文件、文件大小和已关闭的文件都记录在内存中，
+ * 写入路径上不再有exists/mkdirs等文件系统探测。
+ * <p>
+ * 文件名统一为 logs_yyyy-MM-dd_HH-mm_序号.log，序号单调递增。满足以下任一条件时滚动到新文件：
+ * 当前文件达到maxFileSize；设置了rollInterval且进入了新的时间窗口（按本地时间对齐，例如每天零点）。
+ * 滚动后按maxFiles和maxTotalSize删除最旧的文件（包括已被 {@link LogCompressor} 压缩的.gz文件，
+ * 压缩后的文件仍按压缩前的大小计算，重启后扫描目录时从gzip文件尾部读取压缩前的大小）。
+ * <p>
+ * 只能在写日志的单个后台线程中使用。
+ */
+final class LogRotationManager {
+
+    private static final String SUFFIX = ".log";
+
+    private final File folder;
+    private final String fileName;
+    private final long maxFileSize;
+    private final long rollInterval;
+    private final int maxFiles;
+    private final long maxTotalSize;
+    private final LogRotationListener rotationListener;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm", Locale.UK);
+    private final Date date = new Date();
+    //已关闭的文件，从旧到新
+    private final ArrayDeque<Segment> closedSegments = new ArrayDeque<>();
+    private long closedSize;
+
+    private boolean initialized = false;
+    private File current;
+    private long currentSize;
+    private int sequence;
+    private long nextRollTime = Long.MAX_VALUE;
+
+    /**
+     * @param maxFileSize      单个文件的最大字节数
+     * @param rollInterval     按时间滚动的间隔（毫秒），0表示不按时间滚动
+     * @param maxFiles         最多保留的文件数量（包括当前文件），0表示不限制
+     * @param maxTotalSize     所有文件的最大总字节数，0表示不限制
+     * @param rotationListener 文件关闭时的回调，可以为null
+     */
+    LogRotationManager(String folder, String fileName, long maxFileSize, long rollInterval, int maxFiles,
+                       long maxTotalSize, LogRotationListener rotationListener) {
+        this.folder = new File(folder);
+        this.fileName = fileName;
+        this.maxFileSize = maxFileSize;
+        this.rollInterval = rollInterval;
+        this.maxFiles = maxFiles;
+        this.maxTotalSize = maxTotalSize;
+        this.rotationListener = rotationListener;
+    }
+
+    /**
+     * @return 当前应该写入的文件，需要滚动时先滚动
+     */
+    File currentFile(long now) {
+        if (!initialized) {
+            initialize(now);
+        } else if (currentSize >= maxFileSize || now >= nextRollTime) {
+            roll(now);
+        }
+        return current;
+    }
+
+    /**
+     * 写入成功后记录写入的字节数
+     */
+    void onWritten(long bytes) {
+        currentSize += bytes;
+    }
+
+    /**
+     * @return 当前文件已写入的字节数
+     */
+    long currentSize() {
+        return currentSize;
+    }
+
+    /**
+     * 写入出错（例如目录被删除）时调用，下一次写入重新扫描目录
+     */
+    void reset() {
+        initialized = false;
+        current = null;
+        closedSegments.clear();
+        closedSize = 0;
+    }
+
+    private void initialize(long now) {
+        initialized = true;
+        if (!folder.exists()) {
+            //TODO: What if folder is not created, what happens then?
+            folder.mkdirs();
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return sequenceOf(file) >= 0;
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                //压缩后的文件按压缩前的大小计算，与运行期间的统计一致
+                long size = file.getName().endsWith(LogCompressor.SUFFIX)
+                        ? LogCompressor.uncompressedSize(file) : file.length();
+                segments.add(new Segment(file, sequenceOf(file), size));
+            }
+        }
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment lhs, Segment rhs) {
+                return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+            }
+        });
+        for (Segment segment : segments) {
+            closedSegments.addLast(segment);
+            closedSize += segment.size;
+        }
+
+        //上次运行的最后一个文件没有写满、没有被压缩且仍在同一个时间窗口内时继续追加
+        Segment last = closedSegments.peekLast();
+        if (last != null && last.file.getName().endsWith(SUFFIX) && last.size < maxFileSize
+                && windowStart(last.file.lastModified()) == windowStart(now)) {
+            closedSegments.pollLast();
+            closedSize -= last.size;
+            current = last.file;
+            currentSize = last.size;
+            sequence = last.sequence;
+            nextRollTime = nextRollTime(now);
+            return;
+        }
+        if (last != null) {
+            sequence = last.sequence + 1;
+            if (last.file.getName().endsWith(SUFFIX) && rotationListener != null) {
+                rotationListener.onRotated(last.file);
+            }
+        }
+        open(now);
+        applyRetention();
+    }
+
+    private void roll(long now) {
+        closedSegments.addLast(new Segment(current, sequence, currentSize));
+        closedSize += currentSize;
+        File closed = current;
+        open(now);
+        LogStats.getInstance().onRotated();
+        if (rotationListener != null) {
+            rotationListener.onRotated(closed);
+        }
+        applyRetention();
+    }
+
+    private void open(long now) {
+        if (current != null) {
+            sequence++;
+        }
+        date.setTime(now);
+        current = new File(folder, fileName + "_" + dateFormat.format(date) + "_" + sequence + SUFFIX);
+        currentSize = 0;
+        nextRollTime = nextRollTime(now);
+    }
+
+    private void applyRetention() {
+        while (!closedSegments.isEmpty()
+                && ((maxFiles > 0 && closedSegments.size() + 1 > maxFiles)
+                || (maxTotalSize > 0 && closedSize + currentSize > maxTotalSize))) {
+            Segment oldest = closedSegments.pollFirst();
+            closedSize -= oldest.size;
+            String path = oldest.file.getPath();
+            if (path.endsWith(LogCompressor.SUFFIX)) {
+                path = path.substring(0, path.length() - LogCompressor.SUFFIX.length());
+            }
+            //文件可能已经被压缩，两个都删除，同时删除索引
+            new File(path).delete();
+            new File(path + LogCompressor.SUFFIX).delete();
+            new File(path + LogIndex.SUFFIX).delete();
+        }
+    }
+
+    private long nextRollTime(long now) {
+        if (rollInterval <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return windowStart(now) + rollInterval;
+    }
+
+    /**
+     * 时间窗口按本地时区对齐，间隔为一天时在本地零点滚动
+     */
+    private long windowStart(long time) {
+        if (rollInterval <= 0) {
+            return 0;
+        }
+        long local = time + TimeZone.getDefault().getOffset(time);
+        long offset = local % rollInterval;
+        if (offset < 0) {
+            offset += rollInterval;
+        }
+        return time - offset;
+    }
+
+    /**
+     * @return 文件名中的序号，不是本类管理的文件返回-1。兼容旧的 logs_序号.log 命名
+     */
+    private int sequenceOf(File file) {
+        String name = file.getName();
+        if (name.endsWith(LogCompressor.SUFFIX)) {
+            name = name.substring(0, name.length() - LogCompressor.SUFFIX.length());
+        }
+        if (!name.startsWith(fileName + "_") || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        int end = name.length() - SUFFIX.length();
+        int start = name.lastIndexOf('_', end) + 1;
+        try {
+            return Integer.parseInt(name.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Segment {
+        final File file;
+        final int sequence;
+        final long size;
+
+        Segment(File file, int sequence, long size) {
+            this.file = file;
+            this.sequence = sequence;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.LogStats;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.LogInterface;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的日志写入（参考xlog/mars）。
+ * 日志直接写入映射到内存的分段文件，由系统页缓存负责落盘，即使进程在调用后立即被杀死数据也不会丢失，
+ * 且每条日志不需要一次write系统调用。
+ * <p>
+ * 分段文件格式：文件头 [magic(4) version(2) reserved(2)]，之后是连续的记录
+ * [RECORD_MAGIC(1) length(4) crc32(4) payload(length)]，payload为UTF-8编码的日志内容。
+ * 崩溃后 {@link MmapLogReader} 可以恢复到最后一条完整的记录。
+ * 超过一个分段容量的日志在UTF-8字符边界处截断，并在末尾加上 {@link #TRUNCATED_MARKER}。
+ * 可以用maxFiles和maxTotalSize限制保留的分段，打开新分段时删除最旧的分段。
+ * <p>
+ * 使用方式：DiskLogFormatter.newBuilder().logStrategy(new MmapLogImplement(folder)).build()
+ */
+public class MmapLogImplement implements LogInterface, EncodedLogInterface, FlushInterface {
+
+    static final int FILE_MAGIC = 0x4E584C47; // "NXLG"
+    static final short VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final byte RECORD_MAGIC = (byte) 0xA5;
+    static final int RECORD_HEADER_SIZE = 9;
+    static final String FILE_PREFIX = "logs_";
+    static final String FILE_SUFFIX = ".mlog";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    //被截断的日志末尾的标记，换行保持CSV格式
+    static final byte[] TRUNCATED_MARKER = (" <truncated>" + System.getProperty("line.separator")).getBytes(UTF_8);
+
+    private final File folder;
+    private final int segmentSize;
+    private final int maxFiles;
+    private final long maxTotalSize;
+
+    private final CharsetEncoder encoder = UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+
+    public MmapLogImplement(String folder) {
+        this(folder, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param folder      分段文件所在的目录
+     * @param segmentSize 单个分段文件的大小（字节）
+     */
+    public MmapLogImplement(String folder, int segmentSize) {
+        this(folder, segmentSize, 0, 0);
+    }
+
+    /**
+     * @param folder       分段文件所在的目录
+     * @param segmentSize  单个分段文件的大小（字节）
+     * @param maxFiles     最多保留的分段数量（包括当前分段），0表示不限制
+     * @param maxTotalSize 所有分段的最大总字节数，0表示不限制，至少保留当前分段
+     */
+    public MmapLogImplement(String folder, int segmentSize, int maxFiles, long maxTotalSize) {
+        this.folder = new File(folder);
+        this.segmentSize = Math.max(segmentSize, 4096);
+        this.maxFiles = maxFiles;
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    @Override
+    public synchronized void log(int level, String tag, String message) {
+        append(scratch.array(), encode(message));
+    }
+
+    @Override
+    public void log(int priority, LogBuffer buffer) {
+        synchronized (this) {
+            append(buffer.data(), buffer.length());
+        }
+        buffer.recycle();
+    }
+
+    private void append(byte[] data, int length) {
+        try {
+            int capacity = segmentSize - FILE_HEADER_SIZE - RECORD_HEADER_SIZE;
+            byte[] marker = null;
+            int payloadLength = length;
+            if (length > capacity) {
+                marker = TRUNCATED_MARKER;
+                length = utf8Boundary(data, capacity - marker.length);
+                payloadLength = length + marker.length;
+            }
+            MappedByteBuffer buffer = getSegment(RECORD_HEADER_SIZE + payloadLength);
+            crc.reset();
+            crc.update(data, 0, length);
+            if (marker != null) {
+                crc.update(marker, 0, marker.length);
+            }
+
+            int start = buffer.position();
+            //先写内容和校验，最后写记录标记，这样被中断的记录不会被当成完整记录
+            buffer.position(start + 1);
+            buffer.putInt(payloadLength);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(data, 0, length);
+            if (marker != null) {
+                buffer.put(marker);
+            }
+            buffer.put(start, RECORD_MAGIC);
+            LogStats.getInstance().onBytesWritten(RECORD_HEADER_SIZE + payloadLength);
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogStats.getInstance().onIoError(e);
+            segment = null;
+        }
+    }
+
+    /**
+     * @return 不超过limit且不会拆开多字节字符的截断位置
+     */
+    static int utf8Boundary(byte[] data, int limit) {
+        int end = limit;
+        //10xxxxxx是多字节字符的后续字节，不能从这里截断
+        while (end > 0 && (data[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * 将页缓存中的数据强制同步到磁盘，只在需要防止系统掉电时调用
+     */
+    public synchronized void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * 日志在调用线程中已经写入映射内存，这里只需要同步到磁盘
+     */
+    @Override
+    public boolean flush(long timeoutMillis) {
+        flush();
+        return true;
+    }
+
+    private int encode(String message) {
+        CharBuffer in = CharBuffer.wrap(message);
+        scratch.clear();
+        encoder.reset();
+        while (encoder.encode(in, scratch, true).isOverflow()) {
+            ByteBuffer larger = ByteBuffer.allocate(scratch.capacity() * 2);
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+        encoder.flush(scratch);
+        return scratch.position();
+    }
+
+    private MappedByteBuffer getSegment(int recordSize) throws IOException {
+        if (segment == null) {
+            openLastSegment();
+        }
+        if (segment.remaining() < recordSize) {
+            openSegment(segmentIndex + 1, false);
+            LogStats.getInstance().onRotated();
+            applyRetention();
+        }
+        return segment;
+    }
+
+    private void openLastSegment() throws IOException {
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        int lastIndex = -1;
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return segmentIndex(file) >= 0;
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                lastIndex = Math.max(lastIndex, segmentIndex(file));
+            }
+        }
+        if (lastIndex >= 0) {
+            openSegment(lastIndex, true);
+        } else {
+            openSegment(0, false);
+        }
+        applyRetention();
+    }
+
+    /**
+     * 按maxFiles和maxTotalSize删除最旧的分段，当前分段总是保留
+     */
+    private void applyRetention() {
+        if (maxFiles <= 0 && maxTotalSize <= 0) {
+            return;
+        }
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return segmentIndex(file) >= 0;
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                int l = segmentIndex(lhs);
+                int r = segmentIndex(rhs);
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        int count = files.length;
+        for (int i = 0; i < files.length && segmentIndex(files[i]) < segmentIndex
+                && ((maxFiles > 0 && count > maxFiles) || (maxTotalSize > 0 && totalSize > maxTotalSize)); i++) {
+            totalSize -= files[i].length();
+            count--;
+            files[i].delete();
+        }
+    }
+
+    private void openSegment(int index, boolean recover) throws IOException {
+        File file = new File(folder, FILE_PREFIX + index + FILE_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < segmentSize) {
+                raf.setLength(segmentSize);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            if (recover && buffer.getInt(0) == FILE_MAGIC) {
+                //从上次写入的最后一条完整记录之后继续追加
+                buffer.position(MmapLogReader.scanEnd(buffer));
+            } else {
+                buffer.putInt(FILE_MAGIC);
+                buffer.putShort(VERSION);
+                buffer.putShort((short) 0);
+            }
+            segment = buffer;
+            segmentIndex = index;
+        } finally {
+            //映射建立后即可关闭文件，映射在缓冲区被回收前一直有效
+            raf.close();
+        }
+    }
+
+    static int segmentIndex(File file) {
+        String name = file.getName();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.nx.logger.diskLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import static com.nx.logger.diskLog.MmapLogImplement.FILE_HEADER_SIZE;
+import static com.nx.logger.diskLog.MmapLogImplement.FILE_MAGIC;
+import static com.nx.logger.diskLog.MmapLogImplement.RECORD_HEADER_SIZE;
+import static com.nx.logger.diskLog.MmapLogImplement.RECORD_MAGIC;
+
+/**
+ * 读取 {@link MmapLogImplement} 写入的分段文件，遇到不完整或校验失败的记录即认为到达末尾。
+ * 不依赖Android，可以在PC上直接运行：java com.nx.logger.diskLog.MmapLogReader logs_0.mlog ...
+ */
+public final class MmapLogReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MmapLogReader() {
+        //no instance
+    }
+
+    /**
+     * 将分段文件中所有完整的记录按原样写出
+     *
+     * @return 恢复出的记录数
+     */
+    public static int read(File segment, Writer out) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segment, "r");
+        try {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.limit() < FILE_HEADER_SIZE || buffer.getInt(0) != FILE_MAGIC) {
+                throw new IOException("Not a log segment: " + segment);
+            }
+            int count = 0;
+            int position = FILE_HEADER_SIZE;
+            byte[] payload = new byte[4096];
+            CRC32 crc = new CRC32();
+            int end;
+            while ((end = nextRecordEnd(buffer, position, crc, payload)) > 0) {
+                int length = end - position - RECORD_HEADER_SIZE;
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                buffer.position(position + RECORD_HEADER_SIZE);
+                buffer.get(payload, 0, length);
+                out.write(new String(payload, 0, length, UTF_8));
+                count++;
+                position = end;
+            }
+            out.flush();
+            return count;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return 最后一条完整记录之后的位置，即下一条记录的写入位置
+     */
+    static int scanEnd(ByteBuffer buffer) {
+        int position = FILE_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[4096];
+        int end;
+        while ((end = nextRecordEnd(buffer, position, crc, chunk)) > 0) {
+            position = end;
+        }
+        return position;
+    }
+
+    /**
+     * @return position处记录的结束位置，如果该处没有完整有效的记录则返回-1
+     */
+    private static int nextRecordEnd(ByteBuffer buffer, int position, CRC32 crc, byte[] chunk) {
+        int limit = buffer.limit();
+        if (limit - position < RECORD_HEADER_SIZE || buffer.get(position) != RECORD_MAGIC) {
+            return -1;
+        }
+        int length = buffer.getInt(position + 1);
+        if (length < 0 || length > limit - position - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        int expected = buffer.getInt(position + 5);
+        int offset = position + RECORD_HEADER_SIZE;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset);
+        crc.reset();
+        for (int done = 0; done < length; ) {
+            int count = Math.min(chunk.length, length - done);
+            payload.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+            done += count;
+        }
+        if ((int) crc.getValue() != expected) {
+            return -1;
+        }
+        return offset + length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: MmapLogReader <segment>...");
+            System.exit(1);
+        }
+        Writer out = new OutputStreamWriter(System.out, UTF_8);
+        for (String path : args) {
+            read(new File(path), out);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,290 @@
+package com.nx.logger.format;
+
+/**
+ * 单遍扫描的json缩进格式化，不建立JSONObject/JSONArray对象树。
+ * <p>
+ * 逐个字符校验json语法，同时把token原样写入输出，只插入换行和缩进，因此除了输出本身不再有额外的内存占用，
+ * 字符串和数字也保持原文（不会像org.json那样重新排序key或转义'/'）。
+ * 嵌套层级用数组记录而不是递归，层级很深的输入也不会栈溢出。
+ */
+public final class JsonIndenter {
+
+    private static final int VALUE = 0;
+    //'['之后，可以是值或']'
+    private static final int VALUE_OR_END = 1;
+    //'{'之后，可以是key或'}'
+    private static final int KEY_OR_END = 2;
+    private static final int KEY = 3;
+    private static final int COLON = 4;
+    private static final int COMMA_OR_END = 5;
+    private static final int DONE = 6;
+
+    private JsonIndenter() {
+        //no instance
+    }
+
+    /**
+     * @param json   json内容，根节点必须是对象或数组
+     * @param indent 每一层缩进的空格数
+     * @return 格式化后的内容，json不合法时返回null
+     */
+    public static String indent(CharSequence json, int indent) {
+        StringBuilder out = new StringBuilder(json.length() + json.length() / 2);
+        return indent(json, indent, out) ? out.toString() : null;
+    }
+
+    /**
+     * 把格式化的结果追加到out中
+     *
+     * @return json不合法时返回false，out恢复为调用前的内容
+     */
+    public static boolean indent(CharSequence json, int indent, StringBuilder out) {
+        int start = out.length();
+        if (!write(json, indent, out)) {
+            out.setLength(start);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean write(CharSequence in, int indent, StringBuilder out) {
+        int length = in.length();
+        //每一层是否为对象
+        boolean[] objects = new boolean[16];
+        int depth = 0;
+        int state = VALUE;
+
+        int i = skipWhitespace(in, 0, length);
+        if (i == length || (in.charAt(i) != '{' && in.charAt(i) != '[')) {
+            return false;
+        }
+        while ((i = skipWhitespace(in, i, length)) < length) {
+            char c = in.charAt(i);
+            switch (state) {
+                case COLON:
+                    if (c != ':') {
+                        return false;
+                    }
+                    out.append(": ");
+                    i++;
+                    state = VALUE;
+                    break;
+
+                case COMMA_OR_END:
+                    if (c == ',') {
+                        out.append(',');
+                        i++;
+                        state = objects[depth - 1] ? KEY : VALUE_OR_END;
+                        if (state == VALUE_OR_END) {
+                            //','之后必须有值
+                            i = skipWhitespace(in, i, length);
+                            if (i == length || in.charAt(i) == ']') {
+                                return false;
+                            }
+                        }
+                    } else if (c == (objects[depth - 1] ? '}' : ']')) {
+                        depth--;
+                        newLine(out, indent, depth);
+                        out.append(c);
+                        i++;
+                        state = depth == 0 ? DONE : COMMA_OR_END;
+                    } else {
+                        return false;
+                    }
+                    break;
+
+                case KEY_OR_END:
+                case KEY:
+                    if (state == KEY_OR_END && c == '}') {
+                        //空对象输出为{}
+                        depth--;
+                        out.append(c);
+                        i++;
+                        state = depth == 0 ? DONE : COMMA_OR_END;
+                        break;
+                    }
+                    if (c != '"') {
+                        return false;
+                    }
+                    newLine(out, indent, depth);
+                    i = copyString(in, i, length, out);
+                    if (i < 0) {
+                        return false;
+                    }
+                    state = COLON;
+                    break;
+
+                case VALUE:
+                case VALUE_OR_END:
+                    if (state == VALUE_OR_END) {
+                        if (c == ']') {
+                            //空数组输出为[]
+                            depth--;
+                            out.append(c);
+                            i++;
+                            state = depth == 0 ? DONE : COMMA_OR_END;
+                            break;
+                        }
+                        newLine(out, indent, depth);
+                    }
+                    if (c == '{' || c == '[') {
+                        if (depth == objects.length) {
+                            boolean[] larger = new boolean[depth * 2];
+                            System.arraycopy(objects, 0, larger, 0, depth);
+                            objects = larger;
+                        }
+                        objects[depth++] = c == '{';
+                        out.append(c);
+                        i++;
+                        state = c == '{' ? KEY_OR_END : VALUE_OR_END;
+                        break;
+                    }
+                    if (c == '"') {
+                        i = copyString(in, i, length, out);
+                    } else if (c == '-' || (c >= '0' && c <= '9')) {
+                        i = copyNumber(in, i, length, out);
+                    } else {
+                        i = copyLiteral(in, i, length, out);
+                    }
+                    if (i < 0) {
+                        return false;
+                    }
+                    state = COMMA_OR_END;
+                    break;
+
+                default:
+                    //根节点之后还有其他内容
+                    return false;
+            }
+        }
+        return state == DONE;
+    }
+
+    private static int skipWhitespace(CharSequence in, int i, int length) {
+        while (i < length) {
+            char c = in.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static void newLine(StringBuilder out, int indent, int depth) {
+        out.append('\n');
+        for (int n = indent * depth; n > 0; n--) {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * @return 字符串之后的位置，不合法时返回-1
+     */
+    private static int copyString(CharSequence in, int i, int length, StringBuilder out) {
+        int start = i++;
+        while (i < length) {
+            char c = in.charAt(i);
+            if (c == '"') {
+                out.append(in, start, i + 1);
+                return i + 1;
+            }
+            if (c == '\\') {
+                if (i + 1 >= length) {
+                    return -1;
+                }
+                char escaped = in.charAt(i + 1);
+                if (escaped == 'u') {
+                    if (i + 6 > length) {
+                        return -1;
+                    }
+                    for (int j = i + 2; j < i + 6; j++) {
+                        if (Character.digit(in.charAt(j), 16) < 0) {
+                            return -1;
+                        }
+                    }
+                    i += 6;
+                    continue;
+                }
+                if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            if (c < 0x20) {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int copyNumber(CharSequence in, int i, int length, StringBuilder out) {
+        int start = i;
+        if (in.charAt(i) == '-') {
+            i++;
+        }
+        int digits = countDigits(in, i, length);
+        if (digits == 0 || (digits > 1 && in.charAt(i) == '0')) {
+            return -1;
+        }
+        i += digits;
+        if (i < length && in.charAt(i) == '.') {
+            digits = countDigits(in, ++i, length);
+            if (digits == 0) {
+                return -1;
+            }
+            i += digits;
+        }
+        if (i < length && (in.charAt(i) == 'e' || in.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (in.charAt(i) == '+' || in.charAt(i) == '-')) {
+                i++;
+            }
+            digits = countDigits(in, i, length);
+            if (digits == 0) {
+                return -1;
+            }
+            i += digits;
+        }
+        out.append(in, start, i);
+        return i;
+    }
+
+    private static int countDigits(CharSequence in, int i, int length) {
+        int start = i;
+        while (i < length && in.charAt(i) >= '0' && in.charAt(i) <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+    private static int copyLiteral(CharSequence in, int i, int length, StringBuilder out) {
+        String literal;
+        switch (in.charAt(i)) {
+            case 't':
+                literal = "true";
+                break;
+            case 'f':
+                literal = "false";
+                break;
+            case 'n':
+                literal = "null";
+                break;
+            default:
+                return -1;
+        }
+        int end = i + literal.length();
+        if (end > length) {
+            return -1;
+        }
+        for (int j = 0; j < literal.length(); j++) {
+            if (in.charAt(i + j) != literal.charAt(j)) {
+                return -1;
+            }
+        }
+        out.append(literal);
+        return end;
+    }
+}
@@ -0,0 +1,204 @@
+package com.nx.logger.format;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 限制嵌套层级和集合大小的JsonWriter。超过maxDepth的对象或数组输出为 "{...}" / "[...]"，
+ * 超过maxSize的元素不输出，在集合末尾输出被省略的数量。被省略的部分仍会被序列化器遍历，只是不再写入。
+ */
+final class LimitingJsonWriter extends JsonWriter {
+
+    private final int maxDepth;
+    private final int maxSize;
+
+    private int depth = 0;
+    //每一层是否为对象、已出现的元素数量和被省略的元素数量
+    private boolean[] objects = new boolean[16];
+    private int[] counts = new int[16];
+    private int[] omitted = new int[16];
+    //正在跳过的子树的层数，大于0时忽略所有写入
+    private int skipDepth = 0;
+    //对象中还没有写出的key，等到值确定要输出时才写，省略的值和不输出的null不占用数量
+    private String pendingName;
+
+    /**
+     * @param maxDepth 最大嵌套层数，0表示不限制
+     * @param maxSize  每个对象或数组最多输出的元素数量，0表示不限制
+     */
+    LimitingJsonWriter(Writer out, int maxDepth, int maxSize) {
+        super(out);
+        this.maxDepth = maxDepth;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        if (enter("[...]")) {
+            super.beginArray();
+            push(false);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return this;
+        }
+        if (omitted[depth] > 0) {
+            super.value("... " + omitted[depth] + " more");
+        }
+        depth--;
+        return super.endArray();
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        if (enter("{...}")) {
+            super.beginObject();
+            push(true);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return this;
+        }
+        if (omitted[depth] > 0) {
+            super.name("...");
+            super.value(omitted[depth] + " more");
+        }
+        depth--;
+        return super.endObject();
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (skipDepth > 0) {
+            return this;
+        }
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return skip(false) ? this : super.value(value);
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return skip(false) ? this : super.jsonValue(value);
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        return skip(true) ? this : super.nullValue();
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        return skip(false) ? this : super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return skip(false) ? this : super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        return skip(false) ? this : super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        return skip(false) ? this : super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return skip(false) ? this : super.value(value);
+    }
+
+    /**
+     * @return 是否跳过这个值，不跳过时先写出对应的key
+     */
+    private boolean skip(boolean isNull) throws IOException {
+        if (skipDepth > 0) {
+            return true;
+        }
+        if (depth > 0 && objects[depth]) {
+            String name = pendingName;
+            pendingName = null;
+            if (isNull && !getSerializeNulls()) {
+                return true;
+            }
+            if (maxSize > 0 && ++counts[depth] > maxSize) {
+                omitted[depth]++;
+                return true;
+            }
+            super.name(name);
+            return false;
+        }
+        if (maxSize > 0 && depth > 0 && ++counts[depth] > maxSize) {
+            omitted[depth]++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 是否输出这个对象或数组，超过层数限制时输出placeholder
+     */
+    private boolean enter(String placeholder) throws IOException {
+        if (skip(false)) {
+            skipDepth++;
+            return false;
+        }
+        if (maxDepth > 0 && depth >= maxDepth) {
+            super.value(placeholder);
+            skipDepth++;
+            return false;
+        }
+        return true;
+    }
+
+    private void push(boolean object) {
+        depth++;
+        if (depth == objects.length) {
+            int size = depth * 2;
+            boolean[] largerObjects = new boolean[size];
+            int[] largerCounts = new int[size];
+            int[] largerOmitted = new int[size];
+            System.arraycopy(objects, 0, largerObjects, 0, depth);
+            System.arraycopy(counts, 0, largerCounts, 0, depth);
+            System.arraycopy(omitted, 0, largerOmitted, 0, depth);
+            objects = largerObjects;
+            counts = largerCounts;
+            omitted = largerOmitted;
+        }
+        objects[depth] = object;
+        counts[depth] = 0;
+        omitted[depth] = 0;
+    }
+}
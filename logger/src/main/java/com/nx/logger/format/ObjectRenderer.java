@@ -0,0 +1,14 @@
+package com.nx.logger.format;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 自定义某个类的对象在 Logger.object 中的输出方式，通过 {@link ObjectRenderers#register} 注册。
+ * 作为其他对象的字段出现时同样生效。
+ */
+public interface ObjectRenderer<T> {
+
+    void render(T object, JsonWriter writer) throws IOException;
+}
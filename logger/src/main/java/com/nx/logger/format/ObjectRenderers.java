@@ -0,0 +1,150 @@
+package com.nx.logger.format;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Logger.object 使用的对象输出。
+ * <p>
+ * 所有调用共用一个线程安全的Gson，每个类的序列化器只解析一次并缓存。对象直接以缩进格式写入输出，
+ * 不再经过 "Gson字符串 -> JSONObject -> 带缩进的字符串" 的多次转换。
+ * 可以用 {@link #register} 为某个类（及其子类）指定自定义的输出方式。
+ */
+public final class ObjectRenderers {
+
+    private static final List<Registration> REGISTRATIONS = new CopyOnWriteArrayList<>();
+
+    private static final Gson GSON = new GsonBuilder()
+            .enableComplexMapKeySerialization()
+            .registerTypeAdapterFactory(new RendererAdapterFactory())
+            .create();
+
+    //每个类解析好的序列化器
+    private static final Map<Class<?>, TypeAdapter<Object>> ADAPTERS = new ConcurrentHashMap<>();
+
+    private ObjectRenderers() {
+        //no instance
+    }
+
+    /**
+     * 为type及其子类注册自定义的输出方式，需要在第一次输出该类的对象之前注册
+     */
+    public static <T> void register(Class<T> type, ObjectRenderer<? super T> renderer) {
+        //后注册的优先
+        REGISTRATIONS.add(0, new Registration(type, renderer));
+    }
+
+    /**
+     * @return 所有日志共用的Gson
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    /**
+     * @param indent   每一层缩进的空格数
+     * @param maxDepth 最大嵌套层数，0表示不限制
+     * @param maxSize  每个对象或数组最多输出的元素数量，0表示不限制
+     * @return 输出失败或结果不是json对象、数组时返回null
+     */
+    public static String render(Object object, int indent, int maxDepth, int maxSize) {
+        StringBuilder out = new StringBuilder(256);
+        return render(object, indent, maxDepth, maxSize, out) ? out.toString() : null;
+    }
+
+    /**
+     * 把结果追加到out中
+     *
+     * @return 输出失败或结果不是json对象、数组时返回false，out恢复为调用前的内容
+     */
+    public static boolean render(Object object, int indent, int maxDepth, int maxSize, StringBuilder out) {
+        int start = out.length();
+        try {
+            JsonWriter writer = new LimitingJsonWriter(new StringBuilderWriter(out), maxDepth, maxSize);
+            writer.setIndent(spaces(indent));
+            writer.setLenient(true);
+            writer.setSerializeNulls(false);
+            adapterFor(object.getClass()).write(writer, object);
+            writer.flush();
+            if (out.length() > start && (out.charAt(start) == '{' || out.charAt(start) == '[')) {
+                return true;
+            }
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            //无法序列化的类型、循环引用等
+        }
+        out.setLength(start);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypeAdapter<Object> adapterFor(Class<?> type) {
+        TypeAdapter<Object> adapter = ADAPTERS.get(type);
+        if (adapter == null) {
+            adapter = (TypeAdapter<Object>) GSON.getAdapter(type);
+            ADAPTERS.put(type, adapter);
+        }
+        return adapter;
+    }
+
+    private static String spaces(int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static final class Registration {
+        final Class<?> type;
+        final ObjectRenderer<?> renderer;
+
+        Registration(Class<?> type, ObjectRenderer<?> renderer) {
+            this.type = type;
+            this.renderer = renderer;
+        }
+    }
+
+    /**
+     * 让注册的输出方式在对象作为字段、集合元素时同样生效
+     */
+    private static final class RendererAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            Class<? super T> rawType = typeToken.getRawType();
+            for (Registration registration : REGISTRATIONS) {
+                if (registration.type.isAssignableFrom(rawType)) {
+                    final ObjectRenderer<Object> renderer = (ObjectRenderer<Object>) registration.renderer;
+                    return new TypeAdapter<T>() {
+                        @Override
+                        public void write(JsonWriter out, T value) throws IOException {
+                            if (value == null) {
+                                out.nullValue();
+                            } else {
+                                renderer.render(value, out);
+                            }
+                        }
+
+                        @Override
+                        public T read(JsonReader in) throws IOException {
+                            throw new UnsupportedOperationException("ObjectRenderer is write only");
+                        }
+                    };
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.nx.logger.format;
+
+import java.io.Writer;
+
+/**
+ * 直接写入StringBuilder的Writer，不加锁也不产生中间字符串
+ */
+final class StringBuilderWriter extends Writer {
+
+    private final StringBuilder out;
+
+    StringBuilderWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) {
+        out.append((char) c);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int count) {
+        out.append(buffer, offset, count);
+    }
+
+    @Override
+    public void write(String str, int offset, int count) {
+        out.append(str, offset, offset + count);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        out.append(csq);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,73 @@
+package com.nx.logger.format;
+
+/**
+ * 按UTF-8编码长度切分文本，只遍历一次，不编码成byte数组。
+ * <p>
+ * 优先在换行处切分，单行超过上限时在字符边界切分，不会拆开多字节字符和代理对，
+ * 因此中文等内容在切分处不会出现乱码。切分结果以 [start, end) 下标的形式返回，由调用者决定如何使用。
+ * <pre>
+ * int start = 0;
+ * while (start &lt; text.length()) {
+ *     int end = Utf8Chunker.chunkEnd(text, start, maxBytes);
+ *     output(text, start, end);
+ *     start = Utf8Chunker.nextStart(text, end);
+ * }
+ * </pre>
+ */
+public final class Utf8Chunker {
+
+    private Utf8Chunker() {
+        //no instance
+    }
+
+    /**
+     * @param maxBytes 每段最多的UTF-8字节数
+     * @return 从start开始的一段的结束位置（不包含），遇到换行或超过maxBytes时结束，至少包含一个字符
+     */
+    public static int chunkEnd(CharSequence text, int start, int maxBytes) {
+        int length = text.length();
+        int bytes = 0;
+        int i = start;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n')) {
+                return i;
+            }
+            int charCount = 1;
+            int charBytes;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                charBytes = 4;
+                charCount = 2;
+            } else {
+                charBytes = 3;
+            }
+            if (bytes + charBytes > maxBytes && i > start) {
+                return i;
+            }
+            bytes += charBytes;
+            i += charCount;
+        }
+        return i;
+    }
+
+    /**
+     * @param end {@link #chunkEnd} 的返回值
+     * @return 下一段的开始位置，跳过结束处的换行
+     */
+    public static int nextStart(CharSequence text, int end) {
+        if (end < text.length()) {
+            char c = text.charAt(end);
+            if (c == '\n') {
+                return end + 1;
+            }
+            if (c == '\r' && end + 1 < text.length() && text.charAt(end + 1) == '\n') {
+                return end + 2;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,289 @@
+package com.nx.logger.format;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 基于XmlPull的流式xml缩进格式化。
+ * <p>
+ * 每个线程复用一个解析器，边解析边把结果写入输出，不建立DOM，也不需要每次都创建Transformer。
+ * 只包含文本的元素输出在一行内，没有内容的元素输出为 &lt;tag/&gt;，只有空白的文本被忽略。
+ * 必须有且只有一个根元素，根元素之外只能有空白、注释、处理指令和DOCTYPE。
+ */
+public final class XmlIndenter {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private static final ThreadLocal<State> LOCAL_STATE = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private static volatile XmlPullParserFactory factory;
+
+    private XmlIndenter() {
+        //no instance
+    }
+
+    /**
+     * @param indent 每一层缩进的空格数
+     * @return 格式化后的内容，xml不合法时返回null
+     */
+    public static String indent(String xml, int indent) {
+        StringBuilder out = new StringBuilder(xml.length() + xml.length() / 2);
+        return indent(xml, indent, out) ? out.toString() : null;
+    }
+
+    /**
+     * 把格式化的结果追加到out中
+     *
+     * @return xml不合法时返回false，out恢复为调用前的内容
+     */
+    public static boolean indent(String xml, int indent, StringBuilder out) {
+        int start = out.length();
+        State state = LOCAL_STATE.get();
+        try {
+            if (state.parser == null) {
+                state.parser = getFactory().newPullParser();
+            }
+            state.parser.setInput(new StringReader(xml));
+            write(state.parser, state.text, indent, out);
+            return true;
+        } catch (XmlPullParserException | IOException | RuntimeException e) {
+            out.setLength(start);
+            return false;
+        } finally {
+            release(state);
+        }
+    }
+
+    /**
+     * 解析器不再持有输入，超过上限的文本缓冲区不再保留
+     */
+    private static void release(State state) {
+        if (state.parser != null) {
+            try {
+                state.parser.setInput(null);
+            } catch (XmlPullParserException e) {
+                state.parser = null;
+            }
+        }
+        state.text.setLength(0);
+        if (state.text.capacity() > State.MAX_TEXT_CAPACITY) {
+            state.text = new StringBuilder();
+        }
+    }
+
+    private static XmlPullParserFactory getFactory() throws XmlPullParserException {
+        XmlPullParserFactory result = factory;
+        if (result == null) {
+            result = XmlPullParserFactory.newInstance();
+            factory = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param text 当前元素中还没有输出的文本（已转义）
+     */
+    private static void write(XmlPullParser parser, StringBuilder text, int indent, StringBuilder out)
+            throws XmlPullParserException, IOException {
+        out.append(XML_DECLARATION);
+        int depth = 0;
+        int roots = 0;
+        //开始标签的'>'还没有输出，用来把空元素输出为<tag/>，只有文本的元素输出在一行
+        boolean openTag = false;
+
+        int event = parser.nextToken();
+        while (event != XmlPullParser.END_DOCUMENT) {
+            switch (event) {
+                case XmlPullParser.START_TAG:
+                    if (depth == 0 && ++roots > 1) {
+                        throw new XmlPullParserException("multiple root elements");
+                    }
+                    openTag = closeOpenTag(openTag, out);
+                    flushText(text, indent, depth, out);
+                    newLine(out, indent, depth);
+                    out.append('<').append(parser.getName());
+                    for (int i = 0, count = parser.getAttributeCount(); i < count; i++) {
+                        out.append(' ').append(parser.getAttributeName(i)).append("=\"");
+                        escape(parser.getAttributeValue(i), true, out);
+                        out.append('"');
+                    }
+                    openTag = true;
+                    depth++;
+                    break;
+
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    if (openTag && isWhitespace(text)) {
+                        out.append("/>");
+                        text.setLength(0);
+                    } else if (openTag) {
+                        out.append('>');
+                        appendTrimmed(text, out);
+                        text.setLength(0);
+                        out.append("</").append(parser.getName()).append('>');
+                    } else {
+                        flushText(text, indent, depth + 1, out);
+                        newLine(out, indent, depth);
+                        out.append("</").append(parser.getName()).append('>');
+                    }
+                    openTag = false;
+                    break;
+
+                case XmlPullParser.TEXT:
+                    if (depth == 0) {
+                        if (!isWhitespace(parser.getText())) {
+                            throw new XmlPullParserException("text outside the root element");
+                        }
+                        break;
+                    }
+                    escape(parser.getText(), false, text);
+                    break;
+
+                case XmlPullParser.ENTITY_REF:
+                    checkInsideRoot(depth);
+                    if (parser.getText() != null) {
+                        escape(parser.getText(), false, text);
+                    } else {
+                        text.append('&').append(parser.getName()).append(';');
+                    }
+                    break;
+
+                case XmlPullParser.CDSECT:
+                    checkInsideRoot(depth);
+                    text.append("<![CDATA[").append(parser.getText()).append("]]>");
+                    break;
+
+                case XmlPullParser.COMMENT:
+                    openTag = closeOpenTag(openTag, out);
+                    flushText(text, indent, depth, out);
+                    newLine(out, indent, depth);
+                    out.append("<!--").append(parser.getText()).append("-->");
+                    break;
+
+                case XmlPullParser.PROCESSING_INSTRUCTION:
+                    openTag = closeOpenTag(openTag, out);
+                    flushText(text, indent, depth, out);
+                    newLine(out, indent, depth);
+                    out.append("<?").append(parser.getText()).append("?>");
+                    break;
+
+                case XmlPullParser.DOCDECL:
+                    newLine(out, indent, depth);
+                    out.append("<!DOCTYPE").append(parser.getText()).append('>');
+                    break;
+
+                default:
+                    //START_DOCUMENT、IGNORABLE_WHITESPACE
+                    break;
+            }
+            event = parser.nextToken();
+        }
+        //kxml把没有标签的内容当作文档之外的文本，没有结束的元素也直接返回END_DOCUMENT，不会抛出异常
+        if (roots == 0) {
+            throw new XmlPullParserException("no root element");
+        }
+        if (depth != 0) {
+            throw new XmlPullParserException("unclosed element");
+        }
+        out.append('\n');
+    }
+
+    private static void checkInsideRoot(int depth) throws XmlPullParserException {
+        if (depth == 0) {
+            throw new XmlPullParserException("content outside the root element");
+        }
+    }
+
+    private static boolean closeOpenTag(boolean openTag, StringBuilder out) {
+        if (openTag) {
+            out.append('>');
+        }
+        return false;
+    }
+
+    /**
+     * 混合内容中的文本单独输出一行，只有空白时不输出
+     */
+    private static void flushText(StringBuilder text, int indent, int depth, StringBuilder out) {
+        if (text.length() == 0) {
+            return;
+        }
+        if (!isWhitespace(text)) {
+            newLine(out, indent, depth);
+            appendTrimmed(text, out);
+        }
+        text.setLength(0);
+    }
+
+    private static boolean isWhitespace(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendTrimmed(CharSequence text, StringBuilder out) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        out.append(text, start, end);
+    }
+
+    private static void newLine(StringBuilder out, int indent, int depth) {
+        out.append('\n');
+        for (int n = indent * depth; n > 0; n--) {
+            out.append(' ');
+        }
+    }
+
+    private static void escape(String value, boolean attribute, StringBuilder out) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    if (attribute) {
+                        out.append("&quot;");
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static final class State {
+        //超过该大小的文本缓冲区用完后不再保留
+        static final int MAX_TEXT_CAPACITY = 64 * 1024;
+
+        XmlPullParser parser;
+        StringBuilder text = new StringBuilder();
+    }
+}
@@ -0,0 +1,223 @@
+package com.nx.logger.printer;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.LogStats;
+import com.nx.logger.androidBase.LogAdapterInterface;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者、单消费者的有界环形缓冲区。
+ * 调用线程只负责抢占序号并填充预先分配好的 {@link LogEvent}，格式化、堆栈解析和 adapter 分发
+ * 全部在唯一的消费线程中完成。序号单调递增，因此同一线程的日志顺序保持不变。
+ */
+final class AsyncLogDispatcher implements Runnable {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    //flush等待消费者时的轮询间隔
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final EventPrinter printer;
+    private final LogEvent[] slots;
+    private final int mask;
+
+    //最后一个被生产者抢占的序号
+    private final AtomicLong claimed = new AtomicLong(-1);
+    //最后一个被消费者处理完成的序号
+    private final AtomicLong consumed = new AtomicLong(-1);
+    //每个槽位当前已发布的序号，消费者据此判断槽位是否可读
+    private final AtomicLongArray published;
+
+    private final Thread consumer;
+    private volatile boolean consumerWaiting = false;
+    //消费线程自己请求输出到期的重复日志汇总，处理完当前事件后执行，只在消费线程中访问
+    private boolean repeatTimeoutPending = false;
+    private final LogEvent repeatTimeoutEvent = new LogEvent();
+
+    /**
+     * 在消费线程中输出一条事件
+     */
+    interface EventPrinter {
+        void printEvent(LogEvent event);
+    }
+
+    AsyncLogDispatcher(EventPrinter printer, int bufferSize) {
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.printer = printer;
+        this.slots = new LogEvent[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LogEvent();
+            published.set(i, -1);
+        }
+        repeatTimeoutEvent.repeatTimeout = true;
+        consumer = new Thread(this, "NxLogger-async");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * 在调用线程执行，缓冲区满时自旋等待消费者腾出槽位，不会丢弃日志。
+     * 消费线程自己写的日志（例如参数的toString或adapter中写日志）不能等待自己腾出槽位，缓冲区满时丢弃并计数
+     */
+    void publish(int priority, String tag, String message, Object[] args, Throwable throwable,
+                 int methodCount, boolean printToFile, List<String> appendMsgList, LogFields fields,
+                 List<LogAdapterInterface> adapters, String threadName, StackTraceElement[] stackTrace) {
+        long sequence = Thread.currentThread() == consumer ? claim(System.nanoTime()) : claim();
+        if (sequence < 0) {
+            LogStats.getInstance().onDropped(priority);
+            return;
+        }
+        int index = (int) sequence & mask;
+        LogEvent event = slots[index];
+        event.priority = priority;
+        event.tag = tag;
+        event.message = message;
+        event.args = args;
+        event.throwable = throwable;
+        event.methodCount = methodCount;
+        event.printToFile = printToFile;
+        event.appendMsgList = appendMsgList;
+        event.fields = fields;
+        event.adapters = adapters;
+        event.threadName = threadName;
+        event.stackTrace = stackTrace;
+        commit(index, sequence);
+    }
+
+    /**
+     * 合并窗口到期时在定时器线程中调用，让消费线程输出到期的重复日志汇总。
+     * 在消费线程中调用时不占用槽位，处理完当前事件后输出
+     */
+    void publishRepeatTimeout() {
+        if (Thread.currentThread() == consumer) {
+            repeatTimeoutPending = true;
+            return;
+        }
+        long sequence = claim();
+        int index = (int) sequence & mask;
+        slots[index].repeatTimeout = true;
+        commit(index, sequence);
+    }
+
+    /**
+     * 发布一个flush请求并等待它和之前发布的日志全部处理完成，用于崩溃或退出前
+     *
+     * @return 超时或在消费线程中调用时返回false
+     */
+    boolean flush(long timeoutMillis) {
+        if (Thread.currentThread() == consumer) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+        long sequence = claim(deadline);
+        if (sequence < 0) {
+            return false;
+        }
+        int index = (int) sequence & mask;
+        slots[index].flush = true;
+        commit(index, sequence);
+
+        while (consumed.get() < sequence) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, FLUSH_POLL_NANOS));
+        }
+        return true;
+    }
+
+    /**
+     * @return 抢占到的序号，缓冲区满时自旋等待
+     */
+    private long claim() {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed.get()) {
+                Thread.yield();
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @param deadline {@link System#nanoTime()} 的截止时间
+     * @return 抢占到的序号，缓冲区到截止时间仍然是满的时返回-1
+     */
+    private long claim(long deadline) {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed.get()) {
+                if (deadline - System.nanoTime() <= 0) {
+                    return -1;
+                }
+                Thread.yield();
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void commit(int index, long sequence) {
+        published.lazySet(index, sequence);
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                if (++idle < SPIN_TRIES) {
+                    Thread.yield();
+                    continue;
+                }
+                consumerWaiting = true;
+                //再检查一次，避免与生产者的 unpark 错过
+                if (published.get(index) != next) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                consumerWaiting = false;
+                continue;
+            }
+            idle = 0;
+
+            LogEvent event = slots[index];
+            print(event);
+            event.clear();
+            consumed.lazySet(next);
+            next++;
+            if (repeatTimeoutPending) {
+                repeatTimeoutPending = false;
+                print(repeatTimeoutEvent);
+            }
+        }
+    }
+
+    private void print(LogEvent event) {
+        try {
+            printer.printEvent(event);
+        } catch (Throwable e) {
+            //Error（例如toString中的StackOverflowError）也不能让消费线程退出，否则生产者会在缓冲区满后一直等待
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.nx.logger.printer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 获取打印日志的调用位置。
+ * <p>
+ * 使用 new Throwable().getStackTrace() 捕获调用栈，比 Thread.currentThread().getStackTrace() 少了
+ * VMStack 的线程检查和额外的帧；查找调用方时从栈顶开始，找到第一个类库之外的帧就停止，不遍历整个数组。
+ * 渲染好的 "Class.method  (File:line)" 按调用点缓存，同一行代码反复打印时不再拼接字符串。
+ */
+final class CallerLocator {
+
+    private static final String LIBRARY_PACKAGE = "com.nx.logger.";
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final ConcurrentHashMap<StackTraceElement, String> CACHE = new ConcurrentHashMap<>();
+
+    private CallerLocator() {
+        //no instance
+    }
+
+    static StackTraceElement[] capture() {
+        return new Throwable().getStackTrace();
+    }
+
+    /**
+     * @return 调用栈中第一个类库之外的帧，即业务代码中调用Logger的位置；找不到时返回-1
+     */
+    static int callerIndex(StackTraceElement[] trace) {
+        boolean inLibrary = false;
+        for (int i = 0; i < trace.length; i++) {
+            if (trace[i].getClassName().startsWith(LIBRARY_PACKAGE)) {
+                inLibrary = true;
+            } else if (inLibrary) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 形如 "Class.method  (File:line)" 的调用点描述
+     */
+    static String render(StackTraceElement element) {
+        String location = CACHE.get(element);
+        if (location == null) {
+            String className = element.getClassName();
+            location = className.substring(className.lastIndexOf('.') + 1)
+                    + "." + element.getMethodName()
+                    + "  (" + element.getFileName() + ":" + element.getLineNumber() + ")";
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(element, location);
+        }
+        return location;
+    }
+}
@@ -0,0 +1,45 @@
+package com.nx.logger.printer;
+
+/**
+ * 一条日志的链式构造，例如：
+ * <pre>
+ * Logger.atInfo().tag("net").append("url: %s", url).appendJson(body).log("request done in %d ms", cost);
+ * Logger.atInfo().field("latencyMs", cost).field("ok", true).log("request done");
+ * </pre>
+ * 返回的对象是当前线程复用的，只能在同一个线程中完成整个调用链，不要保存下来以后使用。
+ * 级别被关闭时返回的对象忽略所有调用，append中的格式化也不会执行。
+ */
+public interface LogBuilder {
+
+    LogBuilder tag(String tag);
+
+    LogBuilder methodCount(int methodCount);
+
+    LogBuilder printToFile(boolean printToFile);
+
+    LogBuilder throwable(Throwable throwable);
+
+    LogBuilder append(String message, Object... args);
+
+    LogBuilder appendJson(String json);
+
+    LogBuilder appendXml(String xml);
+
+    LogBuilder appendObject(Object object);
+
+    /**
+     * 附加一个结构化字段，见 {@link com.nx.logger.LogFields}
+     */
+    LogBuilder field(String key, long value);
+
+    LogBuilder field(String key, double value);
+
+    LogBuilder field(String key, boolean value);
+
+    LogBuilder field(String key, String value);
+
+    /**
+     * 输出日志并结束调用链
+     */
+    void log(String message, Object... args);
+}
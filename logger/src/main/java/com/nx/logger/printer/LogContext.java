@@ -0,0 +1,204 @@
+package com.nx.logger.printer;
+
+import android.text.TextUtils;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.Utils;
+import com.nx.logger.androidBase.LogAdapterInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 每个线程一个的日志上下文，保存下一条日志的一次性配置（tag、调用栈数量、是否输出到文件、附加信息和字段），
+ * 同时作为 {@link LogBuilder} 的实现。输出或被过滤后立即重置，对象本身一直复用。
+ */
+final class LogContext implements LogBuilder {
+
+    static final int UNSET = -1;
+
+    //附加信息的最大条数，防止只append而从不输出的调用无限增长
+    private static final int MAX_APPEND_COUNT = 64;
+    //重置时超过该条数的列表不再保留
+    private static final int MAX_RETAINED_COUNT = 16;
+
+    private final LoggerPrinter printer;
+
+    int priority;
+    String tag;
+    int methodCount = UNSET;
+    //UNSET、0或1，避免装箱
+    int printToFile = UNSET;
+    Throwable throwable;
+    private ArrayList<String> messages;
+    //超过MAX_APPEND_COUNT被丢弃的附加信息条数
+    private int droppedMessages;
+    private LogFields fields;
+    //NamedLogger指定的adapter，为null时使用LogConfig中的adapter
+    List<LogAdapterInterface> adapters;
+    //级别已经由NamedLogger判断过，不再按全局和tag级别过滤
+    boolean levelChecked;
+    //这一层输出期间同一线程再写日志时使用的上下文
+    private LogContext nested;
+
+    LogContext(LoggerPrinter printer) {
+        this.printer = printer;
+    }
+
+    /**
+     * 输出期间参数的toString或adapter中再写日志时使用下一层的上下文，不会读到或重置这一层的一次性配置
+     */
+    LogContext nested() {
+        if (nested == null) {
+            nested = new LogContext(printer);
+        }
+        return nested;
+    }
+
+    void addMessage(String message) {
+        if (TextUtils.isEmpty(message)) {
+            return;
+        }
+        if (messages == null) {
+            messages = new ArrayList<>();
+        }
+        if (messages.size() < MAX_APPEND_COUNT) {
+            messages.add(message);
+        } else {
+            droppedMessages++;
+        }
+    }
+
+    /**
+     * @param copy 异步模式下附加信息交给其他线程，需要复制
+     * @return 没有附加信息时返回null
+     */
+    List<String> getMessages(boolean copy) {
+        if (messages == null || messages.isEmpty()) {
+            return null;
+        }
+        List<String> result = copy ? new ArrayList<>(messages) : messages;
+        if (droppedMessages > 0) {
+            result.add("dropped " + droppedMessages + " appended messages (limit " + MAX_APPEND_COUNT + ")");
+            droppedMessages = 0;
+        }
+        return result;
+    }
+
+    LogFields fields() {
+        if (fields == null) {
+            fields = new LogFields();
+        }
+        return fields;
+    }
+
+    /**
+     * @param copy 异步模式下字段交给其他线程，需要复制
+     * @return 没有字段时返回null
+     */
+    LogFields getFields(boolean copy) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        return copy ? fields.copy() : fields;
+    }
+
+    void reset() {
+        tag = null;
+        methodCount = UNSET;
+        printToFile = UNSET;
+        throwable = null;
+        adapters = null;
+        levelChecked = false;
+        droppedMessages = 0;
+        if (messages != null) {
+            if (messages.size() > MAX_RETAINED_COUNT) {
+                messages = null;
+            } else {
+                messages.clear();
+            }
+        }
+        if (fields != null) {
+            fields.clear();
+        }
+    }
+
+    @Override
+    public LogBuilder tag(String tag) {
+        if (tag != null) {
+            this.tag = tag;
+        }
+        return this;
+    }
+
+    @Override
+    public LogBuilder methodCount(int methodCount) {
+        this.methodCount = Math.max(methodCount, 0);
+        return this;
+    }
+
+    @Override
+    public LogBuilder printToFile(boolean printToFile) {
+        this.printToFile = printToFile ? 1 : 0;
+        return this;
+    }
+
+    @Override
+    public LogBuilder throwable(Throwable throwable) {
+        this.throwable = throwable;
+        return this;
+    }
+
+    @Override
+    public LogBuilder append(String message, Object... args) {
+        addMessage(LoggerPrinter.createMessage(message, args));
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendJson(String json) {
+        addMessage(Utils.parseJsonMessage(json));
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendXml(String xml) {
+        addMessage(Utils.parseXmlMessage(xml));
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendObject(Object object) {
+        addMessage(printer.parseObject(object));
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, long value) {
+        fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, double value) {
+        fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, boolean value) {
+        fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, String value) {
+        fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public void log(String message, Object... args) {
+        printer.log(priority, throwable, message, args);
+    }
+}
@@ -0,0 +1,43 @@
+package com.nx.logger.printer;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.androidBase.LogAdapterInterface;
+
+import java.util.List;
+
+/**
+ * 异步模式下在调用线程预先捕获的一条日志事件，作为环形缓冲区中的槽位被反复复用
+ */
+final class LogEvent {
+
+    int priority;
+    String tag;
+    String message;
+    Object[] args;
+    Throwable throwable;
+    int methodCount;
+    boolean printToFile;
+    List<String> appendMsgList;
+    LogFields fields;
+    List<LogAdapterInterface> adapters;
+    String threadName;
+    StackTraceElement[] stackTrace;
+    //不是日志，而是让消费线程输出重复日志汇总的请求
+    boolean flush;
+    //不是日志，而是合并窗口到期后让消费线程输出到期汇总的请求
+    boolean repeatTimeout;
+
+    void clear() {
+        tag = null;
+        message = null;
+        args = null;
+        throwable = null;
+        appendMsgList = null;
+        fields = null;
+        adapters = null;
+        threadName = null;
+        stackTrace = null;
+        flush = false;
+        repeatTimeout = false;
+    }
+}
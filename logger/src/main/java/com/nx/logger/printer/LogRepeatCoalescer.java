@@ -0,0 +1,177 @@
+package com.nx.logger.printer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * 合并连续重复的日志。级别、tag、输出目标和内容都与上一条相同的日志不再输出，只计数；
+ * 出现不同的日志、超过合并窗口或调用 {@link #flush()} 时输出一条汇总。
+ * <p>
+ * 判断重复只比较已格式化好的内容，不会再额外格式化；没有重复时只多一次字符串比较。
+ * 合并窗口到期时定时器线程不直接输出，而是通过 {@link PrinterLogFormatter#onRepeatTimeout()}
+ * 交给打印日志的线程调用 {@link #flushExpired()}，与普通日志使用相同的锁或异步消费线程。
+ */
+final class LogRepeatCoalescer {
+
+    //按线程合并时最多记录的线程数量，超过后全部输出汇总并清空
+    private static final int MAX_RUNS = 256;
+    //全局合并时使用的key
+    private static final String GLOBAL = "";
+
+    private final PrinterLogFormatter formatter;
+    private final long timeout;
+    private final boolean perThread;
+
+    private final Map<String, Run> runs = new HashMap<>();
+    private Timer timer;
+    private boolean flushScheduled = false;
+
+    LogRepeatCoalescer(PrinterLogFormatter formatter, long timeout, boolean perThread) {
+        this.formatter = formatter;
+        this.timeout = timeout;
+        this.perThread = perThread;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    boolean isPerThread() {
+        return perThread;
+    }
+
+    /**
+     * @return true表示与上一条日志重复，调用者不需要再输出
+     */
+    synchronized boolean offer(int priority, String tag, String threadName, long adapterMask, String message) {
+        long now = System.currentTimeMillis();
+        String key = perThread ? threadName : GLOBAL;
+        Run run = runs.get(key);
+        if (run != null && run.matches(priority, tag, adapterMask, message)) {
+            if (run.repeats == 0) {
+                run.firstTime = run.lastTime;
+                scheduleFlush(run.firstTime);
+            }
+            run.repeats++;
+            run.lastTime = now;
+            run.threadName = threadName;
+            return true;
+        }
+
+        if (run == null) {
+            if (runs.size() >= MAX_RUNS) {
+                flushAll();
+                runs.clear();
+            }
+            run = new Run();
+            runs.put(key, run);
+        } else if (run.repeats > 0) {
+            //重复结束，先输出汇总再输出新的日志
+            printSummary(run);
+        }
+        run.priority = priority;
+        run.tag = tag;
+        run.adapterMask = adapterMask;
+        run.message = message;
+        run.threadName = threadName;
+        run.lastTime = now;
+        return false;
+    }
+
+    /**
+     * 立即输出所有未输出的汇总
+     */
+    synchronized void flush() {
+        flushAll();
+    }
+
+    /**
+     * 配置变化不再使用时调用，输出汇总并停止定时器
+     */
+    synchronized void close() {
+        flushAll();
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        flushScheduled = false;
+    }
+
+    private void flushAll() {
+        for (Run run : runs.values()) {
+            if (run.repeats > 0) {
+                printSummary(run);
+            }
+        }
+    }
+
+    private void printSummary(Run run) {
+        String summary = "last message repeated " + run.repeats
+                + (run.repeats == 1 ? " time over " : " times over ") + (run.lastTime - run.firstTime) + "ms";
+        run.repeats = 0;
+        formatter.printSummary(run.priority, run.tag, run.threadName, run.adapterMask, summary);
+    }
+
+    /**
+     * 合并窗口结束时输出汇总。之后相同的日志继续计数，刷屏的日志每个窗口只输出一条汇总
+     */
+    synchronized void flushExpired() {
+        flushScheduled = false;
+        long now = System.currentTimeMillis();
+        long nextExpire = Long.MAX_VALUE;
+        Iterator<Run> iterator = runs.values().iterator();
+        while (iterator.hasNext()) {
+            Run run = iterator.next();
+            if (run.repeats > 0) {
+                if (now - run.firstTime >= timeout) {
+                    printSummary(run);
+                } else {
+                    nextExpire = Math.min(nextExpire, run.firstTime + timeout);
+                }
+            } else if (now - run.lastTime >= timeout) {
+                //已经不再打印的线程不再保留
+                iterator.remove();
+            }
+        }
+        if (nextExpire != Long.MAX_VALUE) {
+            scheduleFlush(nextExpire - timeout);
+        }
+    }
+
+    private void scheduleFlush(long firstTime) {
+        if (flushScheduled) {
+            return;
+        }
+        if (timer == null) {
+            timer = new Timer("NxLogger-repeat", true);
+        }
+        flushScheduled = true;
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                formatter.onRepeatTimeout();
+            }
+        }, Math.max(firstTime + timeout - System.currentTimeMillis(), 0));
+    }
+
+    private static final class Run {
+        int priority;
+        String tag;
+        long adapterMask;
+        String message;
+        String threadName;
+        //被合并的第一条日志之前那条（已输出的）日志的时间
+        long firstTime;
+        long lastTime;
+        int repeats;
+
+        boolean matches(int priority, String tag, long adapterMask, String message) {
+            return this.priority == priority && this.adapterMask == adapterMask
+                    && (this.tag == null ? tag == null : this.tag.equals(tag))
+                    && this.message.equals(message);
+        }
+    }
+}
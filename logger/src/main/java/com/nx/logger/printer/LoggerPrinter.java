@@ -4,10 +4,16 @@ package com.nx.logger.printer;
 import android.text.TextUtils;
 
 import com.nx.logger.LogConfig;
+import com.nx.logger.LogFields;
+import com.nx.logger.LogRateLimiter;
+import com.nx.logger.LogStats;
+import com.nx.logger.LoggerRegistry;
 import com.nx.logger.Utils;
+import com.nx.logger.androidBase.FlushInterface;
+import com.nx.logger.androidBase.LogAdapterInterface;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.nx.logger.Logger.ASSERT;
 import static com.nx.logger.Logger.DEBUG;
@@ -19,17 +25,18 @@ import static com.nx.logger.Logger.WARN;
 public class LoggerPrinter implements PrinterInterface {
 
     /**
-     * Provides one-time used tag for the log message
+     * Provides one-time used tag, method count, print-to-file flag and appended messages for the log message
      */
-    private final ThreadLocal<String> localTag = new ThreadLocal<>();
-    private final ThreadLocal<Integer> localMethodCount = new ThreadLocal<>();
-    private final ThreadLocal<Boolean> localIsPrintToFile = new ThreadLocal<>();
-
-    //附加信息
-    private final ThreadLocal<List<String>> localMessageList = new ThreadLocal<>();
+    private final ThreadLocal<LogContext> localContext = new ThreadLocal<LogContext>() {
+        @Override
+        protected LogContext initialValue() {
+            return new LogContext(LoggerPrinter.this);
+        }
+    };
 
     private LogConfig logConfig = new LogConfig();
-    private PrinterLogFormatter logFormatter = null;
+    private volatile PrinterLogFormatter logFormatter = null;
+    private volatile AsyncLogDispatcher asyncDispatcher = null;
 
     @Override
     public LogConfig getLogConfig() {
@@ -46,39 +53,62 @@ public class LoggerPrinter implements PrinterInterface {
     @Override
     public void setLogConfig(LogConfig logConfig) {
         this.logConfig = logConfig;
+        //NamedLogger缓存的有效级别是按之前的LogConfig计算的
+        LoggerRegistry.invalidate();
     }
 
     @Override
     public PrinterInterface tag(String tag) {
-        if (tag != null) {
-            localTag.set(tag);
-        }
+        localContext.get().tag(tag);
         return this;
     }
 
     @Override
     public PrinterInterface methodCount(int methodCount) {
-        localMethodCount.set(methodCount);
+        localContext.get().methodCount = methodCount;
         return this;
     }
 
     @Override
     public PrinterInterface prinToFile(boolean isPrintToFile) {
-        localIsPrintToFile.set(isPrintToFile);
+        localContext.get().printToFile(isPrintToFile);
         return this;
     }
 
+    /**
+     * 开始一条日志的链式构造，会丢弃当前线程之前没有输出的一次性配置
+     */
+    @Override
+    public LogBuilder at(int priority) {
+        if (priority >= 0 && priority <= ASSERT && !logConfig.getLevelFilter().isEnabled(priority)) {
+            return NoopLogBuilder.of(priority);
+        }
+        LogContext context = localContext.get();
+        context.reset();
+        context.priority = priority;
+        return context;
+    }
+
+    @Override
+    public LogBuilder at(int priority, String tag, List<LogAdapterInterface> adapters) {
+        LogContext context = localContext.get();
+        context.reset();
+        context.priority = priority;
+        context.tag = tag;
+        context.adapters = adapters;
+        context.levelChecked = true;
+        return context;
+    }
+
 
     /**
      * @return the appropriate tag based on local or global
      */
-    private String getTag() {
-        String tag = localTag.get();
-        if (tag != null) {
-            localTag.remove();
-            return tag;
+    private String getTag(LogContext context) {
+        if (context.tag != null) {
+            return context.tag;
         }
-        tag = logConfig.getTag();
+        String tag = logConfig.getTag();
 
         if(!TextUtils.isEmpty(tag)){
             return tag;
@@ -87,26 +117,25 @@ public class LoggerPrinter implements PrinterInterface {
         }
     }
 
-    private int getMethodCount() {
-        Integer count = localMethodCount.get();
-        int result = logConfig.getMethodCount();
-        if (count != null) {
-            localMethodCount.remove();
-            result = count;
-        }
+    /**
+     * @return 需要打印的方法调用栈数量，低于 {@link LogConfig#getCallerInfoLevel()} 的日志返回0，不捕获调用栈
+     */
+    private int getMethodCount(LogContext context, int priority) {
+        int result = context.methodCount != LogContext.UNSET ? context.methodCount : logConfig.getMethodCount();
 
         if (result <= 0) {
             //throw new IllegalStateException("methodCount cannot be negative");
             result = 1;
         }
+        if (priority < logConfig.getCallerInfoLevel()) {
+            result = 0;
+        }
         return result;
     }
 
-    private boolean getIsPringtToFile(){
-        Boolean isPrintToFile = localIsPrintToFile.get();
-        if(isPrintToFile != null){
-            localIsPrintToFile.remove();
-            return isPrintToFile;
+    private boolean getIsPringtToFile(LogContext context){
+        if(context.printToFile != LogContext.UNSET){
+            return context.printToFile == 1;
         }
         return this.logConfig.isPrintToFile();
     }
@@ -173,68 +202,63 @@ public class LoggerPrinter implements PrinterInterface {
      * @param obj the xml content
      */
     public void object(Object obj) {
-        String str = Utils.parseObjectMessage(obj);
+        logByLevel(parseObject(obj));
+    }
+
+    String parseObject(Object obj) {
+        String str = Utils.parseObjectMessage(obj, logConfig.getObjectMaxDepth(), logConfig.getObjectMaxSize());
         if( str != null && ("Invalid object content").equals(str)){
-            logByLevel(Utils.toString(obj));
-        }else{
-            logByLevel(str);
+            return Utils.toString(obj);
         }
+        return str;
     }
 
 
     @Override
     public LoggerPrinter append(String message, Object... args) {
-        String msg = createMessage(message, args);
-        if (!TextUtils.isEmpty(msg)) {
-            List<String> msgList = localMessageList.get();
-            if (msgList == null) {
-                msgList = new ArrayList<>();
-                localMessageList.set(msgList);
-            }
-            msgList.add(msg);
-        }
+        localContext.get().addMessage(createMessage(message, args));
         return this;
     }
 
     @Override
     public LoggerPrinter appendJson(String message) {
-        String msg = Utils.parseJsonMessage(message);
-        if (!TextUtils.isEmpty(msg)) {
-            List<String> msgList = localMessageList.get();
-            if (msgList == null) {
-                msgList = new ArrayList<>();
-                localMessageList.set(msgList);
-            }
-            msgList.add(msg);
-        }
+        localContext.get().addMessage(Utils.parseJsonMessage(message));
         return this;
     }
 
     @Override
     public LoggerPrinter appendXml(String message) {
-        String msg = Utils.parseXmlMessage(message);
-        if (!TextUtils.isEmpty(msg)) {
-            List<String> msgList = localMessageList.get();
-            if (msgList == null) {
-                msgList = new ArrayList<>();
-                localMessageList.set(msgList);
-            }
-            msgList.add(msg);
-        }
+        localContext.get().addMessage(Utils.parseXmlMessage(message));
         return this;
     }
 
     @Override
     public LoggerPrinter appendObject(String message) {
-        String msg = Utils.parseObjectMessage(message);
-        if (!TextUtils.isEmpty(msg)) {
-            List<String> msgList = localMessageList.get();
-            if (msgList == null) {
-                msgList = new ArrayList<>();
-                localMessageList.set(msgList);
-            }
-            msgList.add(msg);
-        }
+        localContext.get().addMessage(Utils.parseObjectMessage(message));
+        return this;
+    }
+
+    @Override
+    public LoggerPrinter field(String key, long value) {
+        localContext.get().fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LoggerPrinter field(String key, double value) {
+        localContext.get().fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LoggerPrinter field(String key, boolean value) {
+        localContext.get().fields().add(key, value);
+        return this;
+    }
+
+    @Override
+    public LoggerPrinter field(String key, String value) {
+        localContext.get().fields().add(key, value);
         return this;
     }
 
@@ -263,27 +287,128 @@ public class LoggerPrinter implements PrinterInterface {
     }
 
     /**
-     * This methodCount is synchronized in order to avoid messy of logs' order.
+     * 同步模式下该方法加锁以保证日志顺序；异步模式下只在调用线程捕获事件，不加锁。
      */
-    private synchronized void log(int priority, Throwable throwable, String msg, Object... args) {
-        String tag = getTag();
-        String message = createMessage(msg, args);
-       // Log.d("nx", "msg:" + message);
-        log(priority, tag, message, throwable);
+    void log(int priority, Throwable throwable, String msg, Object... args) {
+        LogContext context = localContext.get();
+        String tag = getTag(context);
+        if (!isLoggable(context, priority, tag)) {
+            return;
+        }
+        long start = System.nanoTime();
+        //参数的toString或adapter中可能再写日志，嵌套的调用使用下一层的上下文
+        localContext.set(context.nested());
+        try {
+            if (!tryAcquire(context, priority, tag, msg)) {
+                return;
+            }
+            if (logConfig.isAsync()) {
+                publish(context, priority, tag, msg, args, throwable);
+            } else {
+                synchronized (this) {
+                    String message = createMessage(msg, args);
+                   // Log.d("nx", "msg:" + message);
+                    print(context, priority, tag, message, throwable);
+                }
+            }
+        } finally {
+            localContext.set(context);
+            context.reset();
+        }
+        LogStats.getInstance().recordCallerTime(System.nanoTime() - start);
     }
 
 
-    private String createMessage(String message, Object... args) {
-        return args == null || args.length == 0 ? message : String.format(message, args);
+    static String createMessage(String message, Object... args) {
+        return args == null || args.length == 0 ? message : MessageTemplate.format(message, args);
     }
 
 
     @Override
-    public synchronized void log(int priority, String tag, String message, Throwable throwable) {
-        if (priority < logConfig.getLogLevel()) {
+    public void log(int priority, String tag, String message, Throwable throwable) {
+        LogContext context = localContext.get();
+        if (!isLoggable(context, priority, tag)) {
             return;
         }
+        long start = System.nanoTime();
+        localContext.set(context.nested());
+        try {
+            if (!tryAcquire(context, priority, tag, message)) {
+                return;
+            }
+            if (logConfig.isAsync()) {
+                publish(context, priority, tag, message, null, throwable);
+            } else {
+                synchronized (this) {
+                    print(context, priority, tag, message, throwable);
+                }
+            }
+        } finally {
+            localContext.set(context);
+            context.reset();
+        }
+        LogStats.getInstance().recordCallerTime(System.nanoTime() - start);
+    }
+
+    /**
+     * 同步模式下在锁内格式化并输出
+     */
+    private void print(LogContext context, int priority, String tag, String message, Throwable throwable) {
+        message = appendThrowable(message, throwable);
+
+        //同步输出，附加信息和字段在返回前已经用完，不需要复制
+        List<String> msgList = context.getMessages(false);
+        LogFields fields = context.getFields(false);
 
+        int methodCount = getMethodCount(context, priority);
+        boolean printToFile = getIsPringtToFile(context);
+        getLogFormatter().log(priority, tag, Thread.currentThread().getName(), null, methodCount, printToFile,
+                msgList, fields, context.adapters, message);
+    }
+
+    /**
+     * 在格式化和捕获调用栈之前按全局、tag和adapter级别过滤，被过滤时同时清掉本次的一次性配置
+     */
+    private boolean isLoggable(LogContext context, int priority, String tag) {
+        if (context.levelChecked || logConfig.getLevelFilter().isLoggable(priority, tag)) {
+            LogStats.getInstance().onAccepted(priority);
+            return true;
+        }
+        LogStats.getInstance().onFiltered(priority);
+        context.reset();
+        return false;
+    }
+
+    /**
+     * 按 {@link LogConfig} 中的采样和限流规则判断是否输出，同一tag或调用位置之前被限流的日志先输出一条汇总
+     *
+     * @param callSite 日志的格式字符串，用来区分调用位置
+     */
+    private boolean tryAcquire(LogContext context, int priority, String tag, String callSite) {
+        LogRateLimiter limiter = logConfig.getRateLimiter();
+        if (limiter == null) {
+            return true;
+        }
+        long suppressed = limiter.tryAcquire(priority, tag, callSite);
+        if (suppressed == LogRateLimiter.SUPPRESSED) {
+            context.reset();
+            return false;
+        }
+        if (suppressed > 0) {
+            String summary = "suppressed " + suppressed + " log events (rate limited)";
+            if (logConfig.isAsync()) {
+                getAsyncDispatcher().publish(priority, tag, summary, null, null, 0, logConfig.isPrintToFile(),
+                        null, null, null, Thread.currentThread().getName(), null);
+            } else {
+                synchronized (this) {
+                    getLogFormatter().log(priority, tag, 0, logConfig.isPrintToFile(), null, summary);
+                }
+            }
+        }
+        return true;
+    }
+
+    private String appendThrowable(String message, Throwable throwable) {
         if (throwable != null && message != null) {
             message += " : " + Utils.getStackTraceString(throwable);
         }
@@ -293,17 +418,135 @@ public class LoggerPrinter implements PrinterInterface {
         if (Utils.isEmpty(message)) {
             message = "Empty/NULL log message";
         }
+        return message;
+    }
 
-        List<String> msgList = localMessageList.get();
-        localMessageList.remove();
+    private PrinterLogFormatter getLogFormatter() {
+        if (logFormatter == null) {
+            PrinterLogFormatter formatter = new PrinterLogFormatter(logConfig);
+            formatter.setRepeatTimeoutHandler(new Runnable() {
+                @Override
+                public void run() {
+                    onRepeatTimeout();
+                }
+            });
+            logFormatter = formatter;
+        }
+        return logFormatter;
+    }
 
-        int methodCount = getMethodCount();
-        boolean printToFile = getIsPringtToFile();
-        if(logFormatter != null){
-            logFormatter.log(priority,tag, methodCount, printToFile, msgList, message);
-        }else{
-            logFormatter = new PrinterLogFormatter(logConfig);
-            logFormatter.log(priority,tag, methodCount, printToFile, msgList, message);
+    /**
+     * 合并窗口到期时在定时器线程中调用。到期的汇总与普通日志一样输出：异步模式下交给消费线程，
+     * 同步模式下先取得本对象的锁再进入合并器的锁，与log中的加锁顺序相同
+     */
+    private void onRepeatTimeout() {
+        if (logConfig.isAsync()) {
+            getAsyncDispatcher().publishRepeatTimeout();
+        } else {
+            synchronized (this) {
+                getLogFormatter().flushExpiredRepeats();
+            }
+        }
+    }
+
+    /**
+     * 在调用线程捕获线程名、调用栈和一次性配置，交给异步消费线程处理。
+     * 参数都不可变时在消费线程中格式化，否则在调用线程格式化，避免参数在输出前被修改
+     */
+    private void publish(LogContext context, int priority, String tag, String message, Object[] args,
+                         Throwable throwable) {
+        List<String> msgList = context.getMessages(true);
+        LogFields fields = context.getFields(true);
+        List<LogAdapterInterface> adapters = context.adapters;
+
+        int methodCount = getMethodCount(context, priority);
+        boolean printToFile = getIsPringtToFile(context);
+        StackTraceElement[] trace = methodCount > 0 ? CallerLocator.capture() : null;
+        if (args != null && !isImmutable(args)) {
+            message = createMessage(message, args);
+            args = null;
+        }
+        getAsyncDispatcher().publish(priority, tag, message, args, throwable, methodCount, printToFile,
+                msgList, fields, adapters, Thread.currentThread().getName(), trace);
+    }
+
+    /**
+     * String、基本类型的包装类和枚举在消费线程中格式化的结果与调用时相同
+     */
+    private static boolean isImmutable(Object[] args) {
+        for (Object arg : args) {
+            if (arg != null && !(arg instanceof String || arg instanceof Integer || arg instanceof Long
+                    || arg instanceof Short || arg instanceof Byte || arg instanceof Double || arg instanceof Float
+                    || arg instanceof Character || arg instanceof Boolean || arg instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 同步输出所有还没有写出的日志：异步模式下等待缓冲区中的日志处理完，输出被合并的重复日志的汇总，
+     * 再让 {@link LogConfig} 中支持 {@link FlushInterface} 的adapter写入文件并落盘
+     */
+    @Override
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+        boolean done = true;
+        AsyncLogDispatcher dispatcher = asyncDispatcher;
+        if (dispatcher != null) {
+            //异步模式下重复日志的汇总（包括合并窗口到期的汇总）都在消费线程中输出
+            done = dispatcher.flush(timeoutMillis);
+        }
+        PrinterLogFormatter formatter = logFormatter;
+        if (formatter != null && !logConfig.isAsync()) {
+            synchronized (this) {
+                formatter.flush();
+            }
+        }
+        List<LogAdapterInterface> adapters = logConfig.getLogAdapterList();
+        for (int i = 0, size = adapters.size(); i < size; i++) {
+            LogAdapterInterface adapter = adapters.get(i);
+            if (adapter instanceof FlushInterface) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                done &= ((FlushInterface) adapter).flush(Math.max(remaining, 0));
+            }
+        }
+        return done;
+    }
+
+    private AsyncLogDispatcher getAsyncDispatcher() {
+        AsyncLogDispatcher dispatcher = asyncDispatcher;
+        if (dispatcher == null) {
+            synchronized (this) {
+                dispatcher = asyncDispatcher;
+                if (dispatcher == null) {
+                    dispatcher = new AsyncLogDispatcher(new AsyncLogDispatcher.EventPrinter() {
+                        @Override
+                        public void printEvent(LogEvent event) {
+                            LoggerPrinter.this.printEvent(event);
+                        }
+                    }, logConfig.getAsyncBufferSize());
+                    asyncDispatcher = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * 只在异步消费线程中调用
+     */
+    void printEvent(LogEvent event) {
+        if (event.flush) {
+            getLogFormatter().flush();
+            return;
+        }
+        if (event.repeatTimeout) {
+            getLogFormatter().flushExpiredRepeats();
+            return;
         }
+        String message = appendThrowable(createMessage(event.message, event.args), event.throwable);
+        getLogFormatter().log(event.priority, event.tag, event.threadName, event.stackTrace,
+                event.methodCount, event.printToFile, event.appendMsgList, event.fields, event.adapters, message);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package com.nx.logger.printer;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译的日志消息模板，用来替代每次调用都重新解析格式串的 String.format。
+ * <p>
+ * 每个不同的格式串只解析一次并缓存（有上限），之后直接把参数渲染进线程私有、可复用的StringBuilder。
+ * 只有 %s、%d、%x、%n、%% 走快速路径；带flag、宽度、精度、参数索引或其他转换符的格式串，
+ * 以及参数类型不符合快速路径的调用，都交给 String.format 处理，因此输出与 String.format 完全一致。
+ */
+final class MessageTemplate {
+
+    private static final int MAX_CACHE_SIZE = 512;
+    private static final int MAX_BUILDER_CAPACITY = 8 * 1024;
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    private static final ConcurrentHashMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<LocalBuilder> LOCAL_BUILDER = new ThreadLocal<LocalBuilder>() {
+        @Override
+        protected LocalBuilder initialValue() {
+            return new LocalBuilder();
+        }
+    };
+
+    //String.format 使用默认Locale的数字，只有零是'0'时才能直接用Integer.toString
+    private static volatile DigitLocale digitLocale = new DigitLocale(null, false);
+
+    //literals[i]位于conversions[i]之前，literals比conversions多一个元素
+    private final String[] literals;
+    private final char[] conversions;
+    //为false时格式串中有快速路径不支持的写法，整个交给String.format
+    private final boolean simple;
+
+    private MessageTemplate(String[] literals, char[] conversions, boolean simple) {
+        this.literals = literals;
+        this.conversions = conversions;
+        this.simple = simple;
+    }
+
+    static String format(String format, Object... args) {
+        if (format == null) {
+            return String.format(format, args);
+        }
+        MessageTemplate template = CACHE.get(format);
+        if (template == null) {
+            template = compile(format);
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                //格式串通常是常量，超过上限说明有动态拼接的格式串，直接清空以限制内存
+                CACHE.clear();
+            }
+            CACHE.put(format, template);
+        }
+        String message = template.simple ? template.render(args) : null;
+        return message != null ? message : String.format(format, args);
+    }
+
+    static MessageTemplate compile(String format) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder conversions = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int length = format.length();
+        for (int i = 0; i < length; i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i + 1 >= length) {
+                return new MessageTemplate(null, null, false);
+            }
+            char conversion = format.charAt(++i);
+            switch (conversion) {
+                case '%':
+                    literal.append('%');
+                    break;
+                case 'n':
+                    literal.append(NEW_LINE);
+                    break;
+                case 's':
+                case 'd':
+                case 'x':
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    conversions.append(conversion);
+                    break;
+                default:
+                    return new MessageTemplate(null, null, false);
+            }
+        }
+        literals.add(literal.toString());
+
+        char[] conversionArray = new char[conversions.length()];
+        conversions.getChars(0, conversionArray.length, conversionArray, 0);
+        return new MessageTemplate(literals.toArray(new String[literals.size()]), conversionArray, true);
+    }
+
+    /**
+     * @return 渲染结果，如果某个参数不能走快速路径则返回null
+     */
+    private String render(Object[] args) {
+        if (args.length < conversions.length) {
+            return null;
+        }
+        LocalBuilder local = LOCAL_BUILDER.get();
+        if (local.inUse) {
+            //参数的toString中又写了日志，外层还在使用线程私有的builder，这一层改用新的builder
+            return render(args, new StringBuilder(256));
+        }
+        local.inUse = true;
+        try {
+            local.builder.setLength(0);
+            return render(args, local.builder);
+        } finally {
+            local.inUse = false;
+            if (local.builder.capacity() > MAX_BUILDER_CAPACITY) {
+                local.builder = new StringBuilder(256);
+            }
+        }
+    }
+
+    private String render(Object[] args, StringBuilder builder) {
+        for (int i = 0; i < conversions.length; i++) {
+            builder.append(literals[i]);
+            if (!appendArg(builder, conversions[i], args[i])) {
+                return null;
+            }
+        }
+        builder.append(literals[conversions.length]);
+        return builder.toString();
+    }
+
+    private static boolean appendArg(StringBuilder builder, char conversion, Object arg) {
+        if (arg == null) {
+            builder.append("null");
+            return true;
+        }
+        switch (conversion) {
+            case 's':
+                if (arg instanceof Formattable) {
+                    return false;
+                }
+                builder.append(arg.toString());
+                return true;
+            case 'd':
+                if (!isAsciiDigits()) {
+                    return false;
+                }
+                if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                    builder.append(((Number) arg).intValue());
+                    return true;
+                }
+                if (arg instanceof Long) {
+                    builder.append(((Long) arg).longValue());
+                    return true;
+                }
+                return false;
+            case 'x':
+                if (arg instanceof Integer) {
+                    builder.append(Integer.toHexString((Integer) arg));
+                    return true;
+                }
+                if (arg instanceof Long) {
+                    builder.append(Long.toHexString((Long) arg));
+                    return true;
+                }
+                if (arg instanceof Short) {
+                    builder.append(Integer.toHexString(((Short) arg) & 0xFFFF));
+                    return true;
+                }
+                if (arg instanceof Byte) {
+                    builder.append(Integer.toHexString(((Byte) arg) & 0xFF));
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isAsciiDigits() {
+        Locale locale = Locale.getDefault();
+        DigitLocale cached = digitLocale;
+        if (cached.locale != locale) {
+            cached = new DigitLocale(locale, DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0');
+            digitLocale = cached;
+        }
+        return cached.asciiDigits;
+    }
+
+    private static final class LocalBuilder {
+        StringBuilder builder = new StringBuilder(256);
+        //正在渲染，同一线程重入时不能复用builder
+        boolean inUse;
+    }
+
+    private static final class DigitLocale {
+        final Locale locale;
+        final boolean asciiDigits;
+
+        DigitLocale(Locale locale, boolean asciiDigits) {
+            this.locale = locale;
+            this.asciiDigits = asciiDigits;
+        }
+    }
+}
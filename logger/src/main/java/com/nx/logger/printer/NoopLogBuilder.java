@@ -0,0 +1,101 @@
+package com.nx.logger.printer;
+
+import com.nx.logger.LogStats;
+
+import static com.nx.logger.Logger.ASSERT;
+
+/**
+ * 级别被关闭时返回的 {@link LogBuilder}，忽略所有调用，只记录一次被过滤
+ */
+public final class NoopLogBuilder implements LogBuilder {
+
+    //按级别预先创建
+    private static final NoopLogBuilder[] BUILDERS = new NoopLogBuilder[ASSERT + 1];
+
+    static {
+        for (int i = 0; i < BUILDERS.length; i++) {
+            BUILDERS[i] = new NoopLogBuilder(i);
+        }
+    }
+
+    private final int priority;
+
+    private NoopLogBuilder(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return 该级别共用的实例
+     */
+    public static LogBuilder of(int priority) {
+        if (priority >= 0 && priority < BUILDERS.length) {
+            return BUILDERS[priority];
+        }
+        return new NoopLogBuilder(priority);
+    }
+
+    @Override
+    public LogBuilder tag(String tag) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder methodCount(int methodCount) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder printToFile(boolean printToFile) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder throwable(Throwable throwable) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder append(String message, Object... args) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendJson(String json) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendXml(String xml) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder appendObject(Object object) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, long value) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, double value) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, boolean value) {
+        return this;
+    }
+
+    @Override
+    public LogBuilder field(String key, String value) {
+        return this;
+    }
+
+    @Override
+    public void log(String message, Object... args) {
+        LogStats.getInstance().onFiltered(priority);
+    }
+}
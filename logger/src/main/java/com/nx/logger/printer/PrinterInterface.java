@@ -1,6 +1,9 @@
 package com.nx.logger.printer;
 
 import com.nx.logger.LogConfig;
+import com.nx.logger.androidBase.LogAdapterInterface;
+
+import java.util.List;
 
 public interface PrinterInterface {
 
@@ -49,10 +52,43 @@ public interface PrinterInterface {
 
     PrinterInterface appendObject(String message);
 
+    /**
+     * 为下一条日志附加一个结构化字段
+     */
+    PrinterInterface field(String key, long value);
+
+    PrinterInterface field(String key, double value);
+
+    PrinterInterface field(String key, boolean value);
+
+    PrinterInterface field(String key, String value);
+
+    /**
+     * 开始一条指定级别日志的链式构造
+     */
+    LogBuilder at(int priority);
+
+    /**
+     * 开始一条级别已经由调用者（例如 {@link com.nx.logger.NamedLogger}）判断过的日志，不再按全局和tag级别过滤
+     *
+     * @param adapters 输出到的adapter，为null时使用 {@link LogConfig} 中的adapter
+     */
+    LogBuilder at(int priority, String tag, List<LogAdapterInterface> adapters);
+
+    /**
+     * 同步写出所有还没有输出的日志并落盘，最多等待timeoutMillis
+     *
+     * @return 是否在时间内全部写出
+     */
+    boolean flush(long timeoutMillis);
+
     LogConfig getLogConfig();
 
     void initLogFormatter();
 
+    /**
+     * 实现需要调用 {@link com.nx.logger.LoggerRegistry#invalidate()}，让NamedLogger按新的配置重新计算有效级别
+     */
     void setLogConfig(LogConfig logConfig);
 
 }
@@ -1,10 +1,17 @@
 package com.nx.logger.printer;
 
 import com.nx.logger.LogConfig;
-import com.nx.logger.Logger;
+import com.nx.logger.LogFields;
+import com.nx.logger.LogLevelFilter;
+import com.nx.logger.Utils;
+import com.nx.logger.androidBase.FieldLogAdapterInterface;
 import com.nx.logger.androidBase.LogAdapterInterface;
+import com.nx.logger.androidBase.RecordLogAdapterInterface;
 import com.nx.logger.diskLog.DiskLogAdapter;
+import com.nx.logger.format.Utf8Chunker;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class PrinterLogFormatter  {
@@ -16,12 +23,8 @@ public class PrinterLogFormatter  {
      */
     private static final int CHUNK_SIZE = 4000;
 
-    /**
-     * The minimum stack trace index, starts at this class after two native calls.
-     * 在该类库中最少经过5次函数调用，才到该类中的log方法。
-     */
-    private static final int MIN_STACK_OFFSET = 5;
-
+    //adapter过滤结果按位保存在一个long中，最多支持64个adapter
+    private static final int MAX_ADAPTER_COUNT = 64;
 
     /**
      * Drawing toolbox
@@ -35,8 +38,11 @@ public class PrinterLogFormatter  {
     private static final String TOP_BORDER = TOP_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
     private static final String BOTTOM_BORDER = BOTTOM_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
     private static final String MIDDLE_BORDER = MIDDLE_CORNER + SINGLE_DIVIDER + SINGLE_DIVIDER;
+    private static final String CONTENT_PREFIX = HORIZONTAL_LINE + " ";
 
     private LogConfig logConfig;
+    private LogRepeatCoalescer repeatCoalescer;
+    private volatile Runnable repeatTimeoutHandler;
 
     public PrinterLogFormatter(LogConfig logConfig) {
         this.logConfig = logConfig;
@@ -44,45 +50,157 @@ public class PrinterLogFormatter  {
 
 
     public void log(int priority, String tag, int methodCount, boolean isPrintToFile, List<String> apppendMsgList, String message) {
+        log(priority, tag, Thread.currentThread().getName(), null, methodCount, isPrintToFile, apppendMsgList, message);
+    }
+
+    /**
+     * 异步模式下由消费线程调用，线程名和调用栈已在调用线程中捕获
+     *
+     * @param threadName 打印日志的线程名
+     * @param trace      调用线程捕获的调用栈，为null时取当前线程的调用栈
+     */
+    public void log(int priority, String tag, String threadName, StackTraceElement[] trace, int methodCount,
+                    boolean isPrintToFile, List<String> apppendMsgList, String message) {
+        log(priority, tag, threadName, trace, methodCount, isPrintToFile, apppendMsgList, null, null, message);
+    }
+
+    /**
+     * @param fields   结构化字段，没有时为null。只在需要文本输出时才渲染为 k=v
+     * @param adapters 输出到的adapter，为null时使用 {@link LogConfig} 中的adapter
+     */
+    public void log(int priority, String tag, String threadName, StackTraceElement[] trace, int methodCount,
+                    boolean isPrintToFile, List<String> apppendMsgList, LogFields fields,
+                    List<LogAdapterInterface> adapters, String message) {
 
+        if (adapters == null) {
+            adapters = logConfig.getLogAdapterList();
+        }
+        long adapterMask = adapterMask(priority, tag, isPrintToFile, adapters);
+        if (adapterMask == 0) {
+            return;
+        }
+        //重复日志的汇总总是输出到LogConfig中的adapter，指定了adapter的日志不合并
+        LogRepeatCoalescer coalescer = getRepeatCoalescer();
+        if (coalescer != null && (apppendMsgList == null || apppendMsgList.isEmpty()) && fields == null
+                && adapters == logConfig.getLogAdapterList()
+                && coalescer.offer(priority, tag, threadName, adapterMask, message)) {
+            return;
+        }
         if (logConfig.isShowThreadInfo()) {
-            tag = tag + "[" + Thread.currentThread().getName() + "]";
+            tag = tag + "[" + threadName + "]";
         }
 
-        if (methodCount <= 0 && (apppendMsgList == null || apppendMsgList.size() == 0) && !message.contains(System.getProperty("line.separator"))) {
-            //如果只是单行日志，则不加边框直接输出
-            logChunk(priority, tag, message, isPrintToFile);
+        List<String> lines;
+        boolean boxed = false;
+        if (methodCount <= 0 && (apppendMsgList == null || apppendMsgList.size() == 0) && message.indexOf('\n') < 0) {
+            //如果只是单行日志，则不加边框直接输出，超长时按字符边界切分
+            if (message.length() * 3 <= CHUNK_SIZE || Utf8Chunker.chunkEnd(message, 0, CHUNK_SIZE) == message.length()) {
+                lines = Collections.singletonList(message);
+            } else {
+                lines = new ArrayList<>();
+                logContent(lines, "", message);
+            }
         } else {
-            logTopBorder(priority, tag, isPrintToFile);
-            logHeaderContent(priority, tag, methodCount, isPrintToFile);
-            //get bytes of message with system's default charset (which is UTF-8 for Android)
+            boxed = true;
+            lines = new ArrayList<>();
+            lines.add(TOP_BORDER);
             if (methodCount > 0) {
-                logDivider(priority, tag, isPrintToFile);
+                logHeaderContent(lines, trace, methodCount);
+                lines.add(MIDDLE_BORDER);
             }
 
             if (apppendMsgList != null && apppendMsgList.size() > 0) {
                 for (String appendMsg : apppendMsgList) {
-                    logBigContent(priority, tag, appendMsg, isPrintToFile);
-                    logDivider(priority, tag, isPrintToFile);
+                    logContent(lines, CONTENT_PREFIX, appendMsg);
+                    lines.add(MIDDLE_BORDER);
                 }
             }
 
-            logBigContent(priority, tag, message, isPrintToFile);
-            logBottomBorder(priority, tag, isPrintToFile);
+            logContent(lines, CONTENT_PREFIX, message);
+            lines.add(BOTTOM_BORDER);
         }
+        logRecord(priority, tag, lines, boxed, fields, adapters, adapterMask);
     }
 
+    /**
+     * 输出重复日志的汇总，不再经过合并
+     */
+    void printSummary(int priority, String tag, String threadName, long adapterMask, String summary) {
+        if (logConfig.isShowThreadInfo()) {
+            tag = tag + "[" + threadName + "]";
+        }
+        logRecord(priority, tag, Collections.singletonList(summary), false, null, logConfig.getLogAdapterList(),
+                adapterMask);
+    }
+
+    /**
+     * 立即输出被合并的重复日志的汇总
+     */
+    public void flush() {
+        LogRepeatCoalescer coalescer = repeatCoalescer;
+        if (coalescer != null) {
+            coalescer.flush();
+        }
+    }
 
+    /**
+     * 设置合并窗口到期时的处理，由它在打印日志的线程中（持有同样的锁或在异步消费线程中）调用 {@link #flushExpiredRepeats()}。
+     * 为null时直接在定时器线程中输出，只适合单独使用本类的情况
+     */
+    void setRepeatTimeoutHandler(Runnable handler) {
+        repeatTimeoutHandler = handler;
+    }
+
+    /**
+     * 在定时器线程中调用
+     */
+    void onRepeatTimeout() {
+        Runnable handler = repeatTimeoutHandler;
+        if (handler != null) {
+            handler.run();
+        } else {
+            flushExpiredRepeats();
+        }
+    }
+
+    /**
+     * 输出超过合并窗口的重复日志汇总
+     */
+    void flushExpiredRepeats() {
+        LogRepeatCoalescer coalescer = repeatCoalescer;
+        if (coalescer != null) {
+            coalescer.flushExpired();
+        }
+    }
 
-    private void logTopBorder(int logType, String tag, boolean printToFile) {
-        logChunk(logType, tag, TOP_BORDER, printToFile);
+    /**
+     * @return 没有开启重复日志合并时返回null，配置变化时先输出旧的汇总再重建
+     */
+    private LogRepeatCoalescer getRepeatCoalescer() {
+        long timeout = logConfig.getRepeatTimeout();
+        LogRepeatCoalescer coalescer = repeatCoalescer;
+        if (coalescer != null && (coalescer.getTimeout() != timeout
+                || coalescer.isPerThread() != logConfig.isRepeatPerThread())) {
+            coalescer.close();
+            coalescer = null;
+        }
+        if (coalescer == null && timeout > 0) {
+            coalescer = new LogRepeatCoalescer(this, timeout, logConfig.isRepeatPerThread());
+        }
+        repeatCoalescer = coalescer;
+        return coalescer;
     }
 
-    @SuppressWarnings("StringBufferReplaceableByString")
-    private void logHeaderContent(int logType, String tag, int methodCount, boolean printToFile) {
-        StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+    private void logHeaderContent(List<String> lines, StackTraceElement[] trace, int methodCount) {
+        if (trace == null) {
+            trace = CallerLocator.capture();
+        }
+        int callerIndex = CallerLocator.callerIndex(trace);
+        if (callerIndex < 0) {
+            return;
+        }
         String level = "";
-        int stackOffset = getStackOffset(trace);
+        int stackOffset = callerIndex - 1;
 
         //corresponding methodCount count with the current stack may exceeds the stack trace. Trims the count
         if (methodCount + stackOffset > trace.length) {
@@ -96,84 +214,93 @@ public class PrinterLogFormatter  {
             if (stackIndex >= trace.length) {
                 continue;
             }
-            StringBuilder builder = new StringBuilder();
-            builder.append(HORIZONTAL_LINE)
-                    .append(' ')
-                    .append(level)
-                    .append(getSimpleClassName(trace[stackIndex].getClassName()))
-                    .append(".")
-                    .append(trace[stackIndex].getMethodName())
-                    .append(" ")
-                    .append(" (")
-                    .append(trace[stackIndex].getFileName())
-                    .append(":")
-                    .append(trace[stackIndex].getLineNumber())
-                    .append(")");
+            lines.add(HORIZONTAL_LINE + " " + level + CallerLocator.render(trace[stackIndex]));
             level += "   ";
-            logChunk(logType, tag, builder.toString(), printToFile);
         }
     }
 
-    private void logBottomBorder(int logType, String tag, boolean printToFile) {
-        logChunk(logType, tag, BOTTOM_BORDER, printToFile);
-    }
-
-    private void logDivider(int logType, String tag, boolean printToFile) {
-        logChunk(logType, tag, MIDDLE_BORDER, printToFile);
-    }
-
-    private void logContent(int logType, String tag, String chunk, boolean printToFile) {
-        String[] lines = chunk.split(System.getProperty("line.separator"));
-        for (String line : lines) {
-            logChunk(logType, tag, HORIZONTAL_LINE + " " + line, printToFile);
-        }
-    }
-
-    private void logBigContent(int priority, String tag, String message, boolean printToFile) {
-        byte[] bytes = message.getBytes();
-        int length = bytes.length;
-        if (length <= CHUNK_SIZE) {
-            logContent(priority, tag, message, printToFile);
-            return;
-        }
-
-        for (int i = 0; i < length; i += CHUNK_SIZE) {
-            int count = Math.min(length - i, CHUNK_SIZE);
-            //create a new String with system's default charset (which is UTF-8 for Android)
-            logContent(priority, tag, new String(bytes, i, count), printToFile);
-        }
+    /**
+     * 按行输出，超过 {@link #CHUNK_SIZE} 字节的行在字符边界处切分。只遍历一次message，每行只复制一次
+     */
+    private void logContent(List<String> lines, String prefix, String message) {
+        StringBuilder builder = new StringBuilder(prefix.length() + Math.min(message.length(), CHUNK_SIZE));
+        int maxBytes = CHUNK_SIZE - Utils.utf8Length(prefix);
+        int start = 0;
+        int length = message.length();
+        do {
+            int end = Utf8Chunker.chunkEnd(message, start, maxBytes);
+            builder.setLength(0);
+            lines.add(builder.append(prefix).append(message, start, end).toString());
+            start = Utf8Chunker.nextStart(message, end);
+        } while (start < length);
     }
 
-    private void logChunk(int priority, String tag, String chunk, boolean printToFile) {
-        List<LogAdapterInterface> list = logConfig.getLogAdapterList();
-        for (LogAdapterInterface adapter : list) {
+    /**
+     * 每条日志只计算一次哪些adapter需要输出，第i位对应adapter列表中的第i个，后面逐行输出时不再重复判断
+     */
+    private long adapterMask(int priority, String tag, boolean printToFile, List<LogAdapterInterface> list) {
+        LogLevelFilter filter = logConfig.getLevelFilter();
+        long mask = 0;
+        for (int i = 0, size = Math.min(list.size(), MAX_ADAPTER_COUNT); i < size; i++) {
+            LogAdapterInterface adapter = list.get(i);
             //当adapter为androidLogAdapter，或（adapter为diskLogAdapter且 printTofile= true）时打印
-            if (!(adapter instanceof DiskLogAdapter) || printToFile) {
-                adapter.log(priority, tag, chunk);
+            if ((!(adapter instanceof DiskLogAdapter) || printToFile)
+                    && priority >= filter.getAdapterLevel(adapter, i)
+                    && adapter.isLoggable(priority, tag)) {
+                mask |= 1L << i;
             }
         }
+        return mask;
     }
 
-    private String getSimpleClassName(String name) {
-        int lastIndex = name.lastIndexOf(".");
-        return name.substring(lastIndex + 1);
+    /**
+     * 整条日志一次交给支持 {@link RecordLogAdapterInterface} 的adapter，其他adapter仍逐行输出。
+     * 字段交给支持 {@link FieldLogAdapterInterface} 的adapter直接输出，其他adapter第一次用到时才渲染为文本
+     */
+    private void logRecord(int priority, String tag, List<String> lines, boolean boxed, LogFields fields,
+                           List<LogAdapterInterface> list, long adapterMask) {
+        List<String> textLines = fields == null ? lines : null;
+        for (int i = 0, size = Math.min(list.size(), MAX_ADAPTER_COUNT); i < size; i++) {
+            if ((adapterMask & (1L << i)) == 0) {
+                continue;
+            }
+            LogAdapterInterface adapter = list.get(i);
+            if (fields != null && adapter instanceof FieldLogAdapterInterface
+                    && ((FieldLogAdapterInterface) adapter).isFieldsSupported()) {
+                ((FieldLogAdapterInterface) adapter).logRecord(priority, tag, lines, fields);
+                continue;
+            }
+            if (textLines == null) {
+                textLines = appendFields(lines, boxed, fields);
+            }
+            if (adapter instanceof RecordLogAdapterInterface) {
+                ((RecordLogAdapterInterface) adapter).logRecord(priority, tag, textLines);
+            } else {
+                for (int j = 0, count = textLines.size(); j < count; j++) {
+                    adapter.log(priority, tag, textLines.get(j));
+                }
+            }
+        }
     }
 
     /**
-     * Determines the starting index of the stack trace, after methodCount calls made by this class.
-     *
-     * @param trace the stack trace
-     * @return the stack offset
+     * 把字段渲染为 k=v 文本：带边框时在底边之前单独输出一行，否则追加在最后一行之后
      */
-    private int getStackOffset(StackTraceElement[] trace) {
-        for (int i = MIN_STACK_OFFSET; i < trace.length; i++) {
-            StackTraceElement e = trace[i];
-            String name = e.getClassName();
-            if (!name.equals(LoggerPrinter.class.getName()) && !name.equals(Logger.class.getName())) {
-                return --i;
-            }
+    private List<String> appendFields(List<String> lines, boolean boxed, LogFields fields) {
+        List<String> result = new ArrayList<>(lines.size() + 1);
+        int last = lines.size() - 1;
+        for (int i = 0; i < last; i++) {
+            result.add(lines.get(i));
+        }
+        StringBuilder builder = new StringBuilder();
+        if (boxed) {
+            logContent(result, CONTENT_PREFIX, fields.appendTo(builder).toString());
+            result.add(lines.get(last));
+        } else {
+            builder.append(lines.get(last)).append(' ');
+            logContent(result, "", fields.appendTo(builder).toString());
         }
-        return -1;
+        return result;
     }
 
 }
@@ -0,0 +1,174 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.LogFields;
+import com.nx.logger.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BinaryLogImplement} 写入的分段经 {@link BinaryLogDecoder} 还原后与原始日志一致，以及写入队列的上限
+ */
+public class BinaryLogImplementTest {
+
+    private File folder;
+
+    /**
+     * 不需要Looper的写入Handler：post的任务先保存，调用runPending()时在当前线程执行
+     */
+    private static class TestWriteHandler extends BinaryLogImplement.WriteHandler {
+        final List<Runnable> pending = new ArrayList<>();
+
+        TestWriteHandler(String folder, int maxFileSize) {
+            super(null, folder, maxFileSize, 256, 1000, null);
+        }
+
+        @Override
+        public boolean post(Runnable r) {
+            pending.add(r);
+            return true;
+        }
+
+        @Override
+        public boolean postAtFrontOfQueue(Runnable r) {
+            r.run();
+            return true;
+        }
+
+        void runPending() {
+            while (!pending.isEmpty()) {
+                pending.remove(0).run();
+            }
+        }
+    }
+
+    @Before
+    public void createFolder() throws Exception {
+        folder = File.createTempFile("blog", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdirs());
+    }
+
+    @After
+    public void deleteFolder() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * @return 按分段顺序解码出的所有行，去掉时间
+     */
+    private List<String> decodeAll() throws Exception {
+        File[] segments = folder.listFiles();
+        assertNotNull(segments);
+        Arrays.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.valueOf(index(a)).compareTo(index(b));
+            }
+        });
+        StringWriter out = new StringWriter();
+        for (File segment : segments) {
+            BinaryLogDecoder.decode(segment, out);
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                //yyyy.MM.dd HH:mm:ss.SSS,
+                lines.add(line.substring(24));
+            }
+        }
+        return lines;
+    }
+
+    private static int index(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(BinaryLogImplement.FILE_PREFIX.length(),
+                name.length() - BinaryLogImplement.FILE_SUFFIX.length()));
+    }
+
+    @Test
+    public void roundTrip_matchesTextFormat() throws Exception {
+        TestWriteHandler handler = new TestWriteHandler(folder.getPath(), 500 * 1024);
+        BinaryLogImplement log = new BinaryLogImplement(handler);
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longMessage.append((char) ('a' + i % 26));
+        }
+        LogFields fields = new LogFields();
+        fields.add("id", -42L);
+        fields.add("ok", true);
+        fields.add("name", "中文");
+
+        log.log(Logger.INFO, "TAG", "hello");
+        //重复的tag和短消息使用字符串表
+        log.log(Logger.INFO, "TAG", "hello");
+        log.log(Logger.ERROR, "NET", longMessage.toString());
+        log.log(Logger.WARN, "TAG", "multi\nline 😀");
+        log.logRecord(Logger.DEBUG, "TAG", Arrays.asList("first", "second"));
+        log.logRecord(Logger.ASSERT, "TAG", Arrays.asList("with fields"), fields);
+        handler.runPending();
+        assertTrue(log.flush(1000));
+
+        List<String> lines = decodeAll();
+        assertEquals(Arrays.asList(
+                "INFO,TAG:hello",
+                "INFO,TAG:hello",
+                "ERROR,NET:" + longMessage,
+                "WARN,TAG:multi <br> line 😀",
+                "DEBUG,TAG:first",
+                "DEBUG,TAG:second",
+                "ASSERT,TAG:with fields id=-42 ok=true name=中文"), lines);
+    }
+
+    @Test
+    public void roundTrip_acrossSegments() throws Exception {
+        TestWriteHandler handler = new TestWriteHandler(folder.getPath(), 512);
+        BinaryLogImplement log = new BinaryLogImplement(handler);
+        for (int i = 0; i < 200; i++) {
+            log.log(Logger.INFO, "TAG", "message " + i);
+        }
+        handler.runPending();
+        assertTrue(log.flush(1000));
+
+        //每个分段有自己的字符串表和起始时间
+        assertTrue(folder.listFiles().length > 1);
+        List<String> lines = decodeAll();
+        assertEquals(200, lines.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("INFO,TAG:message " + i, lines.get(i));
+        }
+    }
+
+    @Test
+    public void queue_boundsPendingRecords() throws Exception {
+        TestWriteHandler handler = new TestWriteHandler(folder.getPath(), 500 * 1024);
+        BinaryLogImplement log = new BinaryLogImplement(handler, 3, 1024 * 1024, BackpressurePolicy.DROP_BELOW_LEVEL,
+                Logger.ERROR);
+        log.log(Logger.INFO, "TAG", "i0");
+        log.log(Logger.INFO, "TAG", "i1");
+        log.log(Logger.INFO, "TAG", "i2");
+        //写入线程还没有处理，超过上限时先丢弃低级别日志
+        log.log(Logger.INFO, "TAG", "i3");
+        log.log(Logger.ERROR, "TAG", "e0");
+        handler.runPending();
+        assertTrue(log.flush(1000));
+
+        assertEquals(Arrays.asList("INFO,TAG:i1", "INFO,TAG:i2", "ERROR,TAG:e0"), decodeAll());
+    }
+}
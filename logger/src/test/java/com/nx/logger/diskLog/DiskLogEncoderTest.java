@@ -0,0 +1,119 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.LogInterface;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link DiskLogEncoder} 的输出必须与 {@link DiskLogFormatter} 原来的StringBuilder路径逐字节相同
+ */
+public class DiskLogEncoderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String NEW_LINE = System.getProperty("line.separator");
+    private static final int TIME_LENGTH = "yyyy.MM.dd HH:mm:ss.SSS".length();
+
+    private static final String[] MESSAGES = {
+            "",
+            "plain ascii",
+            "中文日志内容，包括全角标点。",
+            "日本語と한국어",
+            "emoji 😀 and 👍🏽",
+            "lone high \uD83D end",
+            "lone low \uDE00 end",
+            "trailing high \uD83D",
+            "\uDE00\uD83D reversed pair",
+            "line1" + NEW_LINE + "line2" + NEW_LINE,
+            NEW_LINE + "中文" + NEW_LINE + "😀",
+            "2-byte é ß ü and 3-byte € ☃",
+    };
+
+    /**
+     * 通过StringBuilder路径输出，记录生成的字符串
+     */
+    private static final class CapturingLog implements LogInterface {
+        String content;
+
+        @Override
+        public void log(int priority, String tag, String message) {
+            content = message;
+        }
+    }
+
+    @Test
+    public void encode_matchesStringBuilderPath() throws Exception {
+        CapturingLog capture = new CapturingLog();
+        //指定时间格式时DiskLogFormatter不使用编码器
+        DiskLogFormatter formatter = DiskLogFormatter.newBuilder()
+                .dateFormat(new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK))
+                .logStrategy(capture)
+                .build();
+        DiskLogEncoder encoder = new DiskLogEncoder();
+        SimpleDateFormat parser = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+
+        for (String message : MESSAGES) {
+            for (String tag : new String[]{"NX_LOGGER", "标签😀", null}) {
+                formatter.log(Logger.ERROR, tag, message);
+                long time = parser.parse(capture.content.substring(0, TIME_LENGTH)).getTime();
+
+                LogBuffer buffer = encoder.encode(time, Logger.ERROR, tag, message);
+                byte[] encoded = Arrays.copyOf(buffer.data(), buffer.length());
+                buffer.recycle();
+                assertArrayEquals(message, capture.content.getBytes(UTF_8), encoded);
+            }
+        }
+    }
+
+    @Test
+    public void encodeLines_matchesStringBuilderPath() throws Exception {
+        CapturingLog capture = new CapturingLog();
+        DiskLogFormatter formatter = DiskLogFormatter.newBuilder()
+                .dateFormat(new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK))
+                .logStrategy(capture)
+                .build();
+        DiskLogEncoder encoder = new DiskLogEncoder();
+        SimpleDateFormat parser = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+
+        formatter.logRecord(Logger.INFO, "tag", Arrays.asList(MESSAGES));
+        long time = parser.parse(capture.content.substring(0, TIME_LENGTH)).getTime();
+
+        LogBuffer buffer = encoder.encode(time, Logger.INFO, "tag", Arrays.asList(MESSAGES));
+        byte[] encoded = Arrays.copyOf(buffer.data(), buffer.length());
+        buffer.recycle();
+        assertArrayEquals(capture.content.getBytes(UTF_8), encoded);
+    }
+
+    @Test
+    public void encode_allLevels() throws Exception {
+        DiskLogEncoder encoder = new DiskLogEncoder();
+        String[] names = {"VERBOSE", "DEBUG", "INFO", "WARN", "ERROR", "ASSERT"};
+        for (int priority = Logger.VERBOSE; priority <= Logger.ASSERT; priority++) {
+            LogBuffer buffer = encoder.encode(0, priority, "t", "m");
+            String line = new String(buffer.data(), 0, buffer.length(), UTF_8);
+            buffer.recycle();
+            assertEquals(line, "," + names[priority - Logger.VERBOSE] + ",t:m" + NEW_LINE,
+                    line.substring(TIME_LENGTH));
+        }
+    }
+
+    @Test
+    public void encode_largeMessage() throws Exception {
+        DiskLogEncoder encoder = new DiskLogEncoder();
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            message.append(i % 3 == 0 ? "中" : (i % 3 == 1 ? "😀" : "a"));
+        }
+        LogBuffer buffer = encoder.encode(0, Logger.DEBUG, "t", message.toString());
+        String line = new String(buffer.data(), 0, buffer.length(), UTF_8);
+        buffer.recycle();
+        assertEquals(",DEBUG,t:" + message + NEW_LINE, line.substring(TIME_LENGTH));
+    }
+}
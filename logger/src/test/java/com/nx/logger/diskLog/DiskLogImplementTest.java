@@ -0,0 +1,29 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.Logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用户通过 {@link DiskLogImplement#DiskLogImplement(android.os.Handler)} 传入的Handler在msg.obj中收到String，
+ * 即使使用默认时间格式也不会收到内置写入Handler使用的 {@link LogBuffer}
+ */
+public class DiskLogImplementTest {
+
+    @Test
+    public void customHandler_receivesString() throws Exception {
+        DiskLogQueueTest.TestHandler handler = new DiskLogQueueTest.TestHandler();
+        DiskLogImplement logInterface = new DiskLogImplement(handler);
+        assertFalse(logInterface instanceof EncodedLogInterface);
+
+        DiskLogFormatter formatter = DiskLogFormatter.newBuilder().logStrategy(logInterface).build();
+        formatter.log(Logger.INFO, "TAG", "hello");
+        handler.runPending();
+        assertEquals(1, handler.received.size());
+        Object obj = handler.received.get(0);
+        assertTrue(obj instanceof String);
+        assertTrue((String) obj, ((String) obj).endsWith(",INFO,TAG:hello" + System.getProperty("line.separator")));
+    }
+}
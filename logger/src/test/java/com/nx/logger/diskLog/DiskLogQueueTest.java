@@ -0,0 +1,267 @@
+package com.nx.logger.diskLog;
+
+import android.os.Handler;
+import android.os.Message;
+
+import com.nx.logger.Logger;
+import com.nx.logger.androidBase.FormatInterface;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link DiskLogQueue} 的上限和各个 {@link BackpressurePolicy}，写入线程由测试在当前线程中模拟，不需要Looper
+ */
+public class DiskLogQueueTest {
+
+    /**
+     * post的任务先保存，调用runPending()时在当前线程执行；记录收到的日志
+     */
+    static class TestHandler extends Handler implements DiskLogQueue.Syncable {
+        final List<Runnable> pending = new ArrayList<>();
+        final List<Object> received = new ArrayList<>();
+        final List<Integer> priorities = new ArrayList<>();
+        int syncCount;
+        //收到日志时执行，用来在写入线程中再次写日志
+        Runnable onMessage;
+
+        @Override
+        public boolean post(Runnable r) {
+            synchronized (pending) {
+                pending.add(r);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean postAtFrontOfQueue(Runnable r) {
+            r.run();
+            return true;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            received.add(msg.obj);
+            priorities.add(msg.what);
+            if (onMessage != null) {
+                Runnable task = onMessage;
+                onMessage = null;
+                task.run();
+            }
+        }
+
+        @Override
+        public void sync() {
+            syncCount++;
+        }
+
+        void runPending() {
+            while (true) {
+                Runnable task;
+                synchronized (pending) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    task = pending.remove(0);
+                }
+                task.run();
+            }
+        }
+    }
+
+    private static class DropReporter implements FormatInterface {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void log(int priority, String tag, String message) {
+            assertEquals(Logger.WARN, priority);
+            assertEquals("NX_LOGGER", tag);
+            messages.add(message);
+        }
+    }
+
+    private static DiskLogQueue newQueue(TestHandler handler, DropReporter reporter, int maxRecords, long maxBytes,
+                                         BackpressurePolicy policy) {
+        DiskLogQueue queue = new DiskLogQueue(handler, maxRecords, maxBytes, policy, Logger.ERROR);
+        queue.setDropReporter(reporter);
+        return queue;
+    }
+
+    @Test
+    public void drain_postsOnceAndKeepsOrder() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 100, 1000, BackpressurePolicy.DROP_NEWEST);
+        for (int i = 0; i < 40; i++) {
+            queue.offer(Logger.INFO, "r" + i, 10);
+        }
+        //队列从空变为非空时才post一次，超过初始容量16时扩容不影响顺序
+        assertEquals(1, handler.pending.size());
+        handler.runPending();
+        assertEquals(40, handler.received.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals("r" + i, handler.received.get(i));
+        }
+        assertTrue(reporter.messages.isEmpty());
+
+        queue.offer(Logger.DEBUG, "again", 10);
+        assertEquals(1, handler.pending.size());
+        handler.runPending();
+        assertEquals(Integer.valueOf(Logger.DEBUG), handler.priorities.get(40));
+    }
+
+    @Test
+    public void dropNewest_rejectsAndReportsOnce() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 3, 1000, BackpressurePolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(Logger.ERROR, "r" + i, 10);
+        }
+        handler.runPending();
+        assertEquals(3, handler.received.size());
+        assertEquals("r0", handler.received.get(0));
+        assertEquals("r2", handler.received.get(2));
+        assertEquals(1, reporter.messages.size());
+        assertEquals("disk log queue was full, dropped 2 log records (DROP_NEWEST)", reporter.messages.get(0));
+
+        //汇总后计数清零
+        queue.offer(Logger.ERROR, "r5", 10);
+        handler.runPending();
+        assertEquals(1, reporter.messages.size());
+    }
+
+    @Test
+    public void dropOldest_evictsOldest() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 3, 1000, BackpressurePolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(Logger.ERROR, "r" + i, 10);
+        }
+        handler.runPending();
+        assertEquals(3, handler.received.size());
+        assertEquals("r2", handler.received.get(0));
+        assertEquals("r4", handler.received.get(2));
+        assertEquals("disk log queue was full, dropped 2 log records (DROP_OLDEST)", reporter.messages.get(0));
+    }
+
+    @Test
+    public void dropOldest_boundedByBytes() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 100, 25, BackpressurePolicy.DROP_OLDEST);
+        queue.offer(Logger.INFO, "a", 10);
+        queue.offer(Logger.INFO, "b", 10);
+        queue.offer(Logger.INFO, "c", 10);
+        //一条就超过上限的日志会清空队列后写入
+        queue.offer(Logger.INFO, "big", 30);
+        handler.runPending();
+        assertEquals(1, handler.received.size());
+        assertEquals("big", handler.received.get(0));
+        assertEquals("disk log queue was full, dropped 3 log records (DROP_OLDEST)", reporter.messages.get(0));
+    }
+
+    @Test
+    public void dropBelowLevel_evictsLowLevelsFirst() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 4, 1000, BackpressurePolicy.DROP_BELOW_LEVEL);
+        queue.offer(Logger.INFO, "i1", 10);
+        queue.offer(Logger.INFO, "i2", 10);
+        queue.offer(Logger.ERROR, "e1", 10);
+        queue.offer(Logger.INFO, "i3", 10);
+        //队列已满：ERROR挤掉最旧的低级别日志，低级别日志直接丢弃
+        queue.offer(Logger.ERROR, "e2", 10);
+        queue.offer(Logger.INFO, "i4", 10);
+        queue.offer(Logger.ASSERT, "a1", 10);
+        handler.runPending();
+        assertEquals(4, handler.received.size());
+        assertEquals("e1", handler.received.get(0));
+        assertEquals("i3", handler.received.get(1));
+        assertEquals("e2", handler.received.get(2));
+        assertEquals("a1", handler.received.get(3));
+        assertEquals("disk log queue was full, dropped 3 log records (DROP_BELOW_LEVEL)", reporter.messages.get(0));
+    }
+
+    @Test
+    public void dropBelowLevel_capsAtTwiceTheLimit() throws Exception {
+        TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        DiskLogQueue queue = newQueue(handler, reporter, 4, 1000, BackpressurePolicy.DROP_BELOW_LEVEL);
+        queue.offer(Logger.WARN, "w", 10);
+        //没有低级别日志可以丢弃时，ERROR可以超出上限，直到两倍上限后丢弃最旧的日志
+        for (int i = 0; i < 9; i++) {
+            queue.offer(Logger.ERROR, "e" + i, 10);
+        }
+        handler.runPending();
+        assertEquals(8, handler.received.size());
+        assertEquals("e1", handler.received.get(0));
+        assertEquals("e8", handler.received.get(7));
+        assertEquals("disk log queue was full, dropped 2 log records (DROP_BELOW_LEVEL)", reporter.messages.get(0));
+    }
+
+    @Test
+    public void block_waitsForWriter() throws Exception {
+        final TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        final DiskLogQueue queue = newQueue(handler, reporter, 2, 1000, BackpressurePolicy.BLOCK);
+        queue.offer(Logger.INFO, "r0", 10);
+        queue.offer(Logger.INFO, "r1", 10);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Logger.INFO, "r2", 10);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        //写入线程取出日志后唤醒等待的调用线程
+        handler.runPending();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        handler.runPending();
+        assertEquals(3, handler.received.size());
+        assertEquals("r2", handler.received.get(2));
+        assertTrue(reporter.messages.isEmpty());
+    }
+
+    @Test
+    public void block_dropsOnWriterThread() throws Exception {
+        final TestHandler handler = new TestHandler();
+        DropReporter reporter = new DropReporter();
+        final DiskLogQueue queue = newQueue(handler, reporter, 2, 1000, BackpressurePolicy.BLOCK);
+        queue.offer(Logger.INFO, "r0", 10);
+        queue.offer(Logger.INFO, "r1", 10);
+        //写入线程中写日志时队列已满，等待自己会死锁，因此直接丢弃
+        handler.onMessage = new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Logger.INFO, "nested0", 10);
+                queue.offer(Logger.INFO, "nested1", 10);
+            }
+        };
+        handler.runPending();
+        assertEquals(3, handler.received.size());
+        assertEquals("r1", handler.received.get(1));
+        assertEquals("nested0", handler.received.get(2));
+        assertEquals("disk log queue was full, dropped 1 log records (BLOCK)", reporter.messages.get(0));
+    }
+
+    @Test
+    public void flush_drainsAndSyncs() throws Exception {
+        TestHandler handler = new TestHandler();
+        DiskLogQueue queue = newQueue(handler, new DropReporter(), 10, 1000, BackpressurePolicy.DROP_BELOW_LEVEL);
+        queue.offer(Logger.INFO, "r0", 10);
+        queue.offer(Logger.INFO, "r1", 10);
+        assertTrue(queue.flush(1000));
+        assertEquals(2, handler.received.size());
+        assertEquals(1, handler.syncCount);
+    }
+}
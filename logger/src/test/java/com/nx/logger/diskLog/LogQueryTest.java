@@ -0,0 +1,137 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.Logger;
+import com.nx.logger.Utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LogQuery} 按 {@link LogIndex} 选择读取的区间：不匹配的块被跳过，没有索引覆盖的末尾逐行扫描
+ */
+public class LogQueryTest {
+
+    private static final long BASE_TIME = 1476669600000L;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+    private File folder;
+    private File segment;
+    private LogIndexWriter index;
+
+    @Before
+    public void createSegment() throws Exception {
+        folder = File.createTempFile("query", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdirs());
+        segment = new File(folder, "logs_0.log");
+        index = new LogIndexWriter(2);
+    }
+
+    @After
+    public void deleteFolder() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private String line(long time, int level, String tag, String message) {
+        return dateFormat.format(new Date(time)) + "," + Utils.logLevel(level) + "," + tag + ":" + message;
+    }
+
+    /**
+     * 与写入Handler一样先记录到索引，写入文件后确定位置
+     *
+     * @param indexedLevel 记录到索引中的级别，与行中的级别不同时可以验证块是否被跳过
+     */
+    private String write(long time, int level, int indexedLevel, String tag, String message) throws Exception {
+        String line = line(time, level, tag, message);
+        byte[] bytes = (line + "\n").getBytes("UTF-8");
+        long base = segment.length();
+        index.add(0, time, indexedLevel, tag);
+        FileOutputStream out = new FileOutputStream(segment, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        index.onWritten(segment, base, bytes.length);
+        return line;
+    }
+
+    private String write(long time, int level, String tag, String message) throws Exception {
+        return write(time, level, level, tag, message);
+    }
+
+    @Test
+    public void query_selectsMatchingBlocks() throws Exception {
+        //每2条一个块：[a0 a1] [b0 b1] [c0 c1]，tail还没有写索引
+        String a0 = write(BASE_TIME, Logger.INFO, "net", "a0");
+        String a1 = write(BASE_TIME + 1, Logger.INFO, "net", "a1");
+        String b0 = write(BASE_TIME + 1000, Logger.ERROR, "db", "b0");
+        String b1 = write(BASE_TIME + 1001, Logger.WARN, "db", "b1");
+        String c0 = write(BASE_TIME + 2000, Logger.INFO, "net", "c0");
+        String c1 = write(BASE_TIME + 2001, Logger.INFO, "net", "c1");
+        String tail = write(BASE_TIME + 3000, Logger.ERROR, "db", "tail");
+        assertEquals(3, LogIndex.read(LogIndex.indexFile(segment)).size());
+
+        LogQuery all = LogQuery.newBuilder().build();
+        assertEquals(Arrays.asList(a0, a1, b0, b1, c0, c1, tail), all.query(segment));
+
+        LogQuery errors = LogQuery.newBuilder().minLevel(Logger.ERROR).build();
+        assertEquals(Arrays.asList(b0, tail), errors.query(segment));
+
+        LogQuery range = LogQuery.newBuilder().from(BASE_TIME + 1001).to(BASE_TIME + 2000).build();
+        assertEquals(Arrays.asList(b1, c0), range.query(segment));
+
+        LogQuery tag = LogQuery.newBuilder().tag("net").contains("1").build();
+        assertEquals(Arrays.asList(a1, c1), tag.query(segment));
+    }
+
+    @Test
+    public void query_skipsBlocksExcludedByIndex() throws Exception {
+        //第一个块在索引中只有INFO，行中的ERROR不会被读到，说明整个块被跳过
+        write(BASE_TIME, Logger.ERROR, Logger.INFO, "net", "hidden");
+        write(BASE_TIME + 1, Logger.INFO, "net", "info");
+        String visible = write(BASE_TIME + 2, Logger.ERROR, "net", "visible");
+        write(BASE_TIME + 3, Logger.INFO, "net", "info");
+        index.finish();
+
+        LogQuery errors = LogQuery.newBuilder().minLevel(Logger.ERROR).build();
+        assertEquals(Collections.singletonList(visible), errors.query(segment));
+
+        //没有索引时逐行扫描整个分段
+        assertTrue(LogIndex.indexFile(segment).delete());
+        assertEquals(Arrays.asList(line(BASE_TIME, Logger.ERROR, "net", "hidden"), visible), errors.query(segment));
+    }
+
+    @Test
+    public void query_multipleSegmentsInOrder() throws Exception {
+        String first = write(BASE_TIME, Logger.WARN, "net", "first");
+        index.finish();
+        segment = new File(folder, "logs_1.log");
+        index = new LogIndexWriter(2);
+        String second = write(BASE_TIME + 1, Logger.WARN, "net", "second");
+        index.finish();
+
+        List<File> segments = LogQuery.listSegments(folder);
+        assertEquals(2, segments.size());
+        LogQuery warnings = LogQuery.newBuilder().minLevel(Logger.WARN).parallelism(2).build();
+        assertEquals(Arrays.asList(first, second), warnings.query(segments));
+    }
+}
@@ -0,0 +1,136 @@
+package com.nx.logger.diskLog;
+
+import com.nx.logger.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MmapLogImplement} 重新打开分段时通过 {@link MmapLogReader#scanEnd} 找到最后一条完整记录，
+ * 被中断的记录不会被读出，之后的日志从该处继续写入
+ */
+public class MmapLogImplementTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private File folder;
+    private File segment;
+
+    @Before
+    public void createFolder() throws Exception {
+        folder = File.createTempFile("mlog", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdirs());
+        segment = new File(folder, MmapLogImplement.FILE_PREFIX + 0 + MmapLogImplement.FILE_SUFFIX);
+    }
+
+    @After
+    public void deleteFolder() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static String read(File file) throws Exception {
+        StringWriter out = new StringWriter();
+        MmapLogReader.read(file, out);
+        return out.toString();
+    }
+
+    private static ByteBuffer load(File file) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) raf.length());
+            raf.getChannel().read(buffer, 0);
+            buffer.clear();
+            return buffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 在position处写入字节，模拟写到一半时进程被杀死
+     */
+    private static void writeAt(File file, int position, byte[] bytes) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.write(ByteBuffer.wrap(bytes), position);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void scanEnd_stopsAtLastCompleteRecord() throws Exception {
+        MmapLogImplement log = new MmapLogImplement(folder.getPath(), SEGMENT_SIZE);
+        log.log(Logger.INFO, "TAG", "first\n");
+        log.log(Logger.INFO, "TAG", "second\n");
+        log.flush();
+
+        int firstEnd = MmapLogImplement.FILE_HEADER_SIZE + MmapLogImplement.RECORD_HEADER_SIZE + 6;
+        int secondEnd = firstEnd + MmapLogImplement.RECORD_HEADER_SIZE + 7;
+        assertEquals(secondEnd, MmapLogReader.scanEnd(load(segment)));
+
+        //第二条记录的内容与校验不符
+        writeAt(segment, secondEnd - 1, new byte[]{'!'});
+        assertEquals(firstEnd, MmapLogReader.scanEnd(load(segment)));
+        assertEquals("first\n", read(segment));
+
+        //没有任何记录时从文件头之后开始
+        writeAt(segment, MmapLogImplement.FILE_HEADER_SIZE, new byte[]{0});
+        assertEquals(MmapLogImplement.FILE_HEADER_SIZE, MmapLogReader.scanEnd(load(segment)));
+    }
+
+    @Test
+    public void reopen_appendsAfterTornRecord() throws Exception {
+        MmapLogImplement log = new MmapLogImplement(folder.getPath(), SEGMENT_SIZE);
+        log.log(Logger.INFO, "TAG", "before crash 1\n");
+        log.log(Logger.INFO, "TAG", "before crash 2\n");
+        log.flush();
+        int end = MmapLogReader.scanEnd(load(segment));
+
+        //只写了记录标记和长度，没有写完内容和校验
+        writeAt(segment, end, new byte[]{MmapLogImplement.RECORD_MAGIC, 0, 0, 0, 100});
+        assertEquals("before crash 1\nbefore crash 2\n", read(segment));
+
+        MmapLogImplement reopened = new MmapLogImplement(folder.getPath(), SEGMENT_SIZE);
+        reopened.log(Logger.INFO, "TAG", "after restart\n");
+        reopened.flush();
+        assertEquals("before crash 1\nbefore crash 2\nafter restart\n", read(segment));
+        assertEquals(1, folder.listFiles().length);
+    }
+
+    @Test
+    public void log_truncatesOversizedRecordAtCharBoundary() throws Exception {
+        MmapLogImplement log = new MmapLogImplement(folder.getPath(), SEGMENT_SIZE);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < SEGMENT_SIZE; i++) {
+            message.append('中');
+        }
+        log.log(Logger.INFO, "TAG", message.toString());
+        log.log(Logger.INFO, "TAG", "next\n");
+        log.flush();
+
+        String first = read(segment);
+        assertTrue(first.endsWith(new String(MmapLogImplement.TRUNCATED_MARKER, "UTF-8")));
+        //截断不会拆开多字节字符
+        assertFalse(first.contains("�"));
+        File second = new File(folder, MmapLogImplement.FILE_PREFIX + 1 + MmapLogImplement.FILE_SUFFIX);
+        assertEquals("next\n", read(second));
+    }
+}
@@ -0,0 +1,183 @@
+package com.nx.logger.format;
+
+import com.nx.logger.Utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link JsonIndenter} 的格式化结果和语法校验，不合法的json通过 {@link Utils#parseJsonMessage(String)} 输出"Invalid json content"
+ */
+public class JsonIndenterTest {
+
+    private static final String INVALID = "Invalid json content";
+
+    private static void assertInvalid(String json) {
+        assertNull(json, JsonIndenter.indent(json, Utils.JSON_INDENT));
+        assertEquals(json, INVALID, Utils.parseJsonMessage(json));
+    }
+
+    private static void assertValid(String json) {
+        assertNotNull(json, JsonIndenter.indent(json, Utils.JSON_INDENT));
+    }
+
+    @Test
+    public void indent_nested() throws Exception {
+        String json = "{\"a\":{\"b\":[1,2,{\"c\":null}]},\"d\":true}";
+        String expected = "{\n"
+                + "    \"a\": {\n"
+                + "        \"b\": [\n"
+                + "            1,\n"
+                + "            2,\n"
+                + "            {\n"
+                + "                \"c\": null\n"
+                + "            }\n"
+                + "        ]\n"
+                + "    },\n"
+                + "    \"d\": true\n"
+                + "}";
+        assertEquals(expected, Utils.parseJsonMessage(json));
+        //原有的空白不影响结果
+        assertEquals(expected, Utils.parseJsonMessage(" \n{ \"a\" : { \"b\" :\t[ 1 , 2 ,{\"c\":null} ] } ,\r\n\"d\":true }\n"));
+    }
+
+    @Test
+    public void indent_arrayRoot() throws Exception {
+        assertEquals("[\n  \"x\",\n  false\n]", JsonIndenter.indent("[\"x\",false]", 2));
+    }
+
+    @Test
+    public void indent_emptyContainers() throws Exception {
+        assertEquals("{}", JsonIndenter.indent("{}", 4));
+        assertEquals("[]", JsonIndenter.indent(" [ ] ", 4));
+        assertEquals("{\n    \"a\": [],\n    \"b\": {}\n}", JsonIndenter.indent("{\"a\":[ ],\"b\":{ }}", 4));
+        assertEquals("[\n    [],\n    {}\n]", JsonIndenter.indent("[[],{}]", 4));
+    }
+
+    @Test
+    public void indent_keepsStringsAndKeyOrder() throws Exception {
+        //字符串和转义保持原文，'/'不会被转义，key不会重新排序
+        String json = "{\"z\":\"a/b\",\"a\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u4E2D\",\"中文\":\"😀\"}";
+        String expected = "{\n"
+                + "    \"z\": \"a/b\",\n"
+                + "    \"a\": \"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u4E2D\",\n"
+                + "    \"中文\": \"😀\"\n"
+                + "}";
+        assertEquals(expected, JsonIndenter.indent(json, 4));
+        //字符串中的括号和逗号不影响缩进
+        assertEquals("[\n    \"{[,:]}\"\n]", JsonIndenter.indent("[\"{[,:]}\"]", 4));
+    }
+
+    @Test
+    public void indent_invalidEscapes() throws Exception {
+        assertInvalid("[\"\\x\"]");
+        assertInvalid("[\"\\u12\"]");
+        assertInvalid("[\"\\u12G4\"]");
+        assertInvalid("[\"\\");
+        assertInvalid("[\"unterminated]");
+        assertInvalid("[\"tab\there\"]");
+        assertInvalid("[\"new\nline\"]");
+        assertInvalid("{'single':1}");
+    }
+
+    @Test
+    public void indent_numbers() throws Exception {
+        assertEquals("[\n    0,\n    -0,\n    1.5,\n    -1e10,\n    2E+3,\n    3.0e-2,\n    123456789012345678901234567890\n]",
+                JsonIndenter.indent("[0,-0,1.5,-1e10,2E+3,3.0e-2,123456789012345678901234567890]", 4));
+        assertInvalid("[01]");
+        assertInvalid("[-01]");
+        assertInvalid("[00]");
+        assertInvalid("[-]");
+        assertInvalid("[1.]");
+        assertInvalid("[.5]");
+        assertInvalid("[1e]");
+        assertInvalid("[1e+]");
+        assertInvalid("[+1]");
+        assertInvalid("[0x10]");
+        assertInvalid("[NaN]");
+        assertInvalid("[1 2]");
+    }
+
+    @Test
+    public void indent_literals() throws Exception {
+        assertEquals("[\n    true,\n    false,\n    null\n]", JsonIndenter.indent("[true,false,null]", 4));
+        assertInvalid("[tru]");
+        assertInvalid("[nul");
+        assertInvalid("[truex]");
+        assertInvalid("[True]");
+        assertInvalid("[undefined]");
+    }
+
+    @Test
+    public void indent_trailingCommas() throws Exception {
+        assertInvalid("[1,]");
+        assertInvalid("[1, ]");
+        assertInvalid("{\"a\":1,}");
+        assertInvalid("[,]");
+        assertInvalid("{,}");
+        assertInvalid("[1,,2]");
+    }
+
+    @Test
+    public void indent_structureErrors() throws Exception {
+        assertInvalid("{\"a\"}");
+        assertInvalid("{\"a\":}");
+        assertInvalid("{\"a\" 1}");
+        assertInvalid("{1:2}");
+        assertInvalid("[1:2]");
+        assertInvalid("{\"a\":1]");
+        assertInvalid("[1}");
+        assertInvalid("[");
+        assertInvalid("{\"a\":[1,2}");
+        //根节点必须是对象或数组
+        assertInvalid("\"text\"");
+        assertInvalid("1");
+        assertInvalid("null");
+        assertInvalid("   ");
+        assertInvalid("not json");
+    }
+
+    @Test
+    public void indent_trailingGarbage() throws Exception {
+        assertInvalid("{} x");
+        assertInvalid("[1] [2]");
+        assertInvalid("{\"a\":1}}");
+        assertInvalid("[]]");
+        assertInvalid("{},");
+        assertValid("{}  \n\t");
+    }
+
+    @Test
+    public void indent_deepNesting() throws Exception {
+        int depth = 100000;
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            json.append(i % 2 == 0 ? "[" : "{\"k\":");
+        }
+        json.append('1');
+        for (int i = depth - 1; i >= 0; i--) {
+            json.append(i % 2 == 0 ? ']' : '}');
+        }
+        //嵌套层级不使用递归，不会栈溢出。缩进为0，避免输出随层级平方增长
+        String result = JsonIndenter.indent(json, 0);
+        assertNotNull(result);
+        assertTrue(result.startsWith("[\n{\n\"k\": [\n"));
+        assertTrue(result.contains("\n\"k\": 1\n}\n]\n}\n"));
+        assertTrue(result.endsWith("\n}\n]"));
+        assertEquals("[\n  [\n    [\n      1\n    ]\n  ]\n]", JsonIndenter.indent("[[[1]]]", 2));
+
+        //少一个结束括号
+        assertNull(JsonIndenter.indent(json.substring(0, json.length() - 1), 0));
+        assertInvalid("[[[{\"k\":[1]}]]");
+    }
+
+    @Test
+    public void indent_restoresBuilderOnFailure() throws Exception {
+        StringBuilder out = new StringBuilder("prefix");
+        assertFalse(JsonIndenter.indent("{\"a\":[1,2,3,]}", 4, out));
+        assertEquals("prefix", out.toString());
+        assertTrue(JsonIndenter.indent("[1]", 4, out));
+        assertEquals("prefix[\n    1\n]", out.toString());
+    }
+}
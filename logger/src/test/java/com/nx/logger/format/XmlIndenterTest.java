@@ -0,0 +1,126 @@
+package com.nx.logger.format;
+
+import com.nx.logger.Utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link XmlIndenter} 的格式化结果和根元素校验，不合法的xml通过 {@link Utils#parseXmlMessage(String)} 输出"Invalid xml content"
+ */
+public class XmlIndenterTest {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String INVALID = "Invalid xml content";
+
+    private static void assertInvalid(String xml) {
+        assertNull(xml, XmlIndenter.indent(xml, Utils.XML_INDENT));
+        assertEquals(xml, INVALID, Utils.parseXmlMessage(xml));
+    }
+
+    @Test
+    public void indent_nested() throws Exception {
+        String xml = "<a id=\"1\"><b>text</b><c/><d>\n  </d></a>";
+        String expected = DECLARATION + "\n"
+                + "<a id=\"1\">\n"
+                + "  <b>text</b>\n"
+                + "  <c/>\n"
+                + "  <d/>\n"
+                + "</a>\n";
+        assertEquals(expected, Utils.parseXmlMessage(xml));
+        //原有的缩进不影响结果
+        assertEquals(expected, XmlIndenter.indent("\n<a id=\"1\">\n\t<b>  text </b>\n <c></c><d/>\n</a>\n", 2));
+    }
+
+    @Test
+    public void indent_singleElement() throws Exception {
+        assertEquals(DECLARATION + "\n<root/>\n", XmlIndenter.indent("<root/>", 4));
+        assertEquals(DECLARATION + "\n<root>value</root>\n", XmlIndenter.indent("<?xml version=\"1.0\"?><root>value</root>", 4));
+    }
+
+    @Test
+    public void indent_outsideRootAllowed() throws Exception {
+        //根元素之外可以有空白、注释和处理指令
+        String xml = "  <!--before--> <a/>\n<!--after-->\n<?pi data?>  ";
+        assertEquals(DECLARATION + "\n<!--before-->\n<a/>\n<!--after-->\n<?pi data?>\n", XmlIndenter.indent(xml, 2));
+    }
+
+    @Test
+    public void indent_escapes() throws Exception {
+        assertEquals(DECLARATION + "\n<a x=\"1 &amp; &quot;2&quot;\">&lt;b&gt; &amp; \"c\"</a>\n",
+                XmlIndenter.indent("<a x='1 &amp; \"2\"'>&lt;b&gt; &amp; \"c\"</a>", 2));
+    }
+
+    @Test
+    public void indent_mixedContent() throws Exception {
+        String expected = DECLARATION + "\n"
+                + "<a>\n"
+                + "  hello\n"
+                + "  <b>bold</b>\n"
+                + "  world\n"
+                + "  <c>\n"
+                + "    x\n"
+                + "    <d/>\n"
+                + "  </c>\n"
+                + "</a>\n";
+        assertEquals(expected, XmlIndenter.indent("<a>hello <b>bold</b> world<c>x<d/></c></a>", 2));
+    }
+
+    @Test
+    public void indent_cdata() throws Exception {
+        assertEquals(DECLARATION + "\n<a><![CDATA[<x> & y]]></a>\n", XmlIndenter.indent("<a><![CDATA[<x> & y]]></a>", 2));
+        assertEquals(DECLARATION + "\n<a>t <![CDATA[c]]></a>\n", XmlIndenter.indent("<a>t <![CDATA[c]]></a>", 2));
+        assertEquals(DECLARATION + "\n<a>\n  <![CDATA[c]]>\n  <b/>\n</a>\n", XmlIndenter.indent("<a><![CDATA[c]]><b/></a>", 2));
+    }
+
+    @Test
+    public void indent_noRootElement() throws Exception {
+        assertInvalid("not xml");
+        assertInvalid("{\"json\":true}");
+        assertInvalid("   ");
+        assertInvalid("<!--only a comment-->");
+        assertInvalid("<?xml version=\"1.0\"?>");
+    }
+
+    @Test
+    public void indent_multipleRoots() throws Exception {
+        assertInvalid("<a/><b/>");
+        assertInvalid("<a></a>\n<a></a>");
+        assertInvalid("<a><b/></a><c/>");
+    }
+
+    @Test
+    public void indent_contentOutsideRoot() throws Exception {
+        assertInvalid("text<a/>");
+        assertInvalid("<a/>text");
+        assertInvalid("<a/><![CDATA[c]]>");
+        assertInvalid("<![CDATA[c]]><a/>");
+        assertInvalid("&amp;<a/>");
+    }
+
+    @Test
+    public void indent_malformed() throws Exception {
+        assertInvalid("<a>");
+        assertInvalid("<a><b></a></b>");
+        assertInvalid("<a></b>");
+        assertInvalid("<a x=1/>");
+        assertInvalid("<a><b>");
+    }
+
+    @Test
+    public void indent_unknownEntityKept() throws Exception {
+        //DTD中定义的实体无法展开，原样输出
+        assertEquals(DECLARATION + "\n<a>&custom;</a>\n", XmlIndenter.indent("<a>&custom;</a>", 2));
+    }
+
+    @Test
+    public void indent_restoresBuilderOnFailure() throws Exception {
+        StringBuilder out = new StringBuilder("prefix");
+        assertFalse(XmlIndenter.indent("<a/><b/>", 2, out));
+        assertEquals("prefix", out.toString());
+        //失败后解析器仍然可以复用
+        assertTrue(XmlIndenter.indent("<a/>", 2, out));
+        assertEquals("prefix" + DECLARATION + "\n<a/>\n", out.toString());
+    }
+}
@@ -0,0 +1,159 @@
+package com.nx.logger.printer;
+
+import com.nx.logger.Logger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AsyncLogDispatcher} 的顺序、flush，以及消费线程自己写日志时不会等待自己腾出槽位
+ */
+public class AsyncLogDispatcherTest {
+
+    private static final long TIMEOUT = 5000;
+
+    /**
+     * 记录消费线程收到的事件，事件中的字段在返回后会被清空，因此只保存需要的值
+     */
+    private static class RecordingPrinter implements AsyncLogDispatcher.EventPrinter {
+        final List<String> printed = Collections.synchronizedList(new ArrayList<String>());
+        //收到第一条日志时在消费线程中执行，执行完后countDown
+        volatile Runnable onFirstEvent;
+        final CountDownLatch firstEventDone = new CountDownLatch(1);
+
+        @Override
+        public void printEvent(LogEvent event) {
+            if (event.flush) {
+                printed.add("flush");
+                return;
+            }
+            if (event.repeatTimeout) {
+                printed.add("repeatTimeout");
+                return;
+            }
+            printed.add(event.threadName + ":" + event.message);
+            Runnable task = onFirstEvent;
+            if (task != null) {
+                onFirstEvent = null;
+                try {
+                    task.run();
+                } finally {
+                    firstEventDone.countDown();
+                }
+            }
+        }
+    }
+
+    private static void publish(AsyncLogDispatcher dispatcher, String threadName, String message) {
+        dispatcher.publish(Logger.INFO, "TAG", message, null, null, 0, false, null, null, null, threadName, null);
+    }
+
+    @Test
+    public void publish_keepsPerThreadOrder() throws Exception {
+        RecordingPrinter printer = new RecordingPrinter();
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(printer, 8);
+        int threadCount = 4;
+        final int perThread = 500;
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final String name = "t" + t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        publish(dispatcher, name, Integer.toString(i));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(TIMEOUT);
+        }
+        assertTrue(dispatcher.flush(TIMEOUT));
+
+        List<String> printed = new ArrayList<>(printer.printed);
+        assertEquals(threadCount * perThread + 1, printed.size());
+        assertEquals("flush", printed.get(printed.size() - 1));
+        Map<String, Integer> last = new HashMap<>();
+        for (String line : printed.subList(0, printed.size() - 1)) {
+            String[] parts = line.split(":");
+            int index = Integer.parseInt(parts[1]);
+            Integer previous = last.put(parts[0], index);
+            assertEquals(line, previous == null ? 0 : previous + 1, index);
+        }
+    }
+
+    @Test
+    public void publish_onConsumerThreadDropsWhenFull() throws Exception {
+        final RecordingPrinter printer = new RecordingPrinter();
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(printer, 4);
+        final boolean[] consumerFlushed = {true};
+        printer.onFirstEvent = new Runnable() {
+            @Override
+            public void run() {
+                //当前事件还占着一个槽位，只有3个空槽位，之后的日志丢弃而不是一直等待
+                for (int i = 0; i < 20; i++) {
+                    publish(dispatcher, "consumer", Integer.toString(i));
+                }
+                //在消费线程中flush不能等待自己
+                consumerFlushed[0] = dispatcher.flush(TIMEOUT);
+            }
+        };
+        publish(dispatcher, "main", "first");
+        assertTrue(printer.firstEventDone.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertFalse(consumerFlushed[0]);
+        assertTrue(dispatcher.flush(TIMEOUT));
+
+        List<String> printed = new ArrayList<>(printer.printed);
+        assertEquals(5, printed.size());
+        assertEquals("main:first", printed.get(0));
+        assertEquals("consumer:0", printed.get(1));
+        assertEquals("consumer:2", printed.get(3));
+        assertEquals("flush", printed.get(4));
+    }
+
+    @Test
+    public void publishRepeatTimeout_onConsumerThreadRunsAfterCurrentEvent() throws Exception {
+        final RecordingPrinter printer = new RecordingPrinter();
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(printer, 2);
+        printer.onFirstEvent = new Runnable() {
+            @Override
+            public void run() {
+                publish(dispatcher, "consumer", "nested");
+                //缓冲区已满，汇总请求不占用槽位
+                dispatcher.publishRepeatTimeout();
+            }
+        };
+        publish(dispatcher, "main", "first");
+        assertTrue(printer.firstEventDone.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(dispatcher.flush(TIMEOUT));
+
+        List<String> printed = new ArrayList<>(printer.printed);
+        assertEquals(4, printed.size());
+        assertEquals("main:first", printed.get(0));
+        assertEquals("repeatTimeout", printed.get(1));
+        assertEquals("consumer:nested", printed.get(2));
+        assertEquals("flush", printed.get(3));
+    }
+
+    @Test
+    public void publishRepeatTimeout_fromOtherThread() throws Exception {
+        RecordingPrinter printer = new RecordingPrinter();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(printer, 4);
+        publish(dispatcher, "main", "a");
+        dispatcher.publishRepeatTimeout();
+        publish(dispatcher, "main", "b");
+        assertTrue(dispatcher.flush(TIMEOUT));
+        assertEquals("[main:a, repeatTimeout, main:b, flush]", printer.printed.toString());
+    }
+}
@@ -0,0 +1,47 @@
+package com.nx.logger.printer;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LogContext} 附加信息的条数上限和嵌套上下文
+ */
+public class LogContextTest {
+
+    @Test
+    public void addMessage_overLimitAddsMarker() throws Exception {
+        LogContext context = new LogContext(null);
+        for (int i = 0; i < 70; i++) {
+            context.addMessage("m" + i);
+        }
+        List<String> messages = context.getMessages(true);
+        assertEquals(65, messages.size());
+        assertEquals("m63", messages.get(63));
+        assertEquals("dropped 6 appended messages (limit 64)", messages.get(64));
+
+        context.reset();
+        context.addMessage("after");
+        messages = context.getMessages(false);
+        assertEquals(1, messages.size());
+        assertEquals("after", messages.get(0));
+    }
+
+    @Test
+    public void nested_isSeparateAndReused() throws Exception {
+        LogContext context = new LogContext(null);
+        context.tag("outer");
+        context.addMessage("outer message");
+        LogContext nested = context.nested();
+        assertNotSame(context, nested);
+        assertSame(nested, context.nested());
+
+        //嵌套调用重置自己的上下文，不影响外层
+        nested.tag("inner");
+        nested.reset();
+        assertEquals("outer", context.tag);
+        assertEquals("outer message", context.getMessages(false).get(0));
+    }
+}
@@ -0,0 +1,144 @@
+package com.nx.logger.printer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MessageTemplate#format} 的输出必须与 String.format 完全一致
+ */
+public class MessageTemplateTest {
+
+    private final Locale defaultLocale = Locale.getDefault();
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    private static void assertSameAsStringFormat(String format, Object... args) {
+        assertEquals(format, String.format(format, args), MessageTemplate.format(format, args));
+    }
+
+    @Test
+    public void simpleConversions_matchStringFormat() throws Exception {
+        assertSameAsStringFormat("plain text");
+        assertSameAsStringFormat("%s and %s", "a", 1);
+        assertSameAsStringFormat("%d items", 42);
+        assertSameAsStringFormat("%d %d %d %d", (byte) 7, (short) 300, 70000, 1L << 40);
+        assertSameAsStringFormat("0x%x", 255);
+        assertSameAsStringFormat("%s", "中文内容");
+        assertSameAsStringFormat("extra args %s", "a", "b", "c");
+    }
+
+    @Test
+    public void negativeValues_matchStringFormat() throws Exception {
+        assertSameAsStringFormat("%d %d %d %d", (byte) -1, (short) -300, Integer.MIN_VALUE, Long.MIN_VALUE);
+        assertSameAsStringFormat("%x", (byte) -1);
+        assertSameAsStringFormat("%x", (byte) -128);
+        assertSameAsStringFormat("%x", (short) -1);
+        assertSameAsStringFormat("%x", (short) -32768);
+        assertSameAsStringFormat("%x", -1);
+        assertSameAsStringFormat("%x", Integer.MIN_VALUE);
+        assertSameAsStringFormat("%x", -1L);
+        assertSameAsStringFormat("%x", Long.MIN_VALUE);
+    }
+
+    @Test
+    public void nullArguments_matchStringFormat() throws Exception {
+        assertSameAsStringFormat("%s", (Object) null);
+        assertSameAsStringFormat("%d", (Object) null);
+        assertSameAsStringFormat("%x", (Object) null);
+        assertSameAsStringFormat("%s-%d-%x", null, null, null);
+    }
+
+    @Test
+    public void newLineAndPercent_matchStringFormat() throws Exception {
+        assertSameAsStringFormat("line%nnext");
+        assertSameAsStringFormat("100%%");
+        assertSameAsStringFormat("%d%% done%n", 50);
+        assertSameAsStringFormat("%%s is literal");
+    }
+
+    @Test
+    public void fallbackConversions_matchStringFormat() throws Exception {
+        assertSameAsStringFormat("%5d|%-5s|%05x", 42, "ab", 255);
+        assertSameAsStringFormat("%.2f", 3.14159);
+        assertSameAsStringFormat("%2$s %1$s", "a", "b");
+        assertSameAsStringFormat("%b %c %o %X %e", true, 'c', 8, 255, 12345.678);
+        assertSameAsStringFormat("%,d", 1234567);
+        //快速路径不支持的参数类型
+        assertSameAsStringFormat("%d", new java.math.BigInteger("-123456789012345678901234567890"));
+        assertSameAsStringFormat("%x", new java.math.BigInteger("-255"));
+        assertSameAsStringFormat("%s", new Formattable() {
+            @Override
+            public void formatTo(Formatter formatter, int flags, int width, int precision) {
+                formatter.format("formattable");
+            }
+        });
+    }
+
+    @Test
+    public void invalidFormats_throwLikeStringFormat() throws Exception {
+        String[] formats = {"%", "%d %d", "%q"};
+        for (String format : formats) {
+            Class<?> expected = null;
+            try {
+                String.format(format, 1);
+            } catch (RuntimeException e) {
+                expected = e.getClass();
+            }
+            try {
+                MessageTemplate.format(format, 1);
+                fail(format + " should throw");
+            } catch (RuntimeException e) {
+                assertEquals(format, expected, e.getClass());
+            }
+        }
+    }
+
+    @Test
+    public void nonAsciiDigitLocale_matchesStringFormat() throws Exception {
+        //确认这个Locale确实不使用ASCII数字，否则下面的比较没有意义
+        assertFalse("0".equals(String.format(new Locale("th", "TH", "TH"), "%d", 0)));
+        Locale[] locales = {new Locale("th", "TH", "TH"), new Locale("ar", "EG"), new Locale("hi", "IN"),
+                Locale.US};
+        for (Locale locale : locales) {
+            Locale.setDefault(locale);
+            assertSameAsStringFormat("%d items, %d bytes", 42, -1234567890123L);
+            assertSameAsStringFormat("%x %s", 255, 7);
+        }
+    }
+
+    @Test
+    public void nestedFormatInToString_keepsOuterMessage() throws Exception {
+        //参数的toString中再次格式化（例如在toString中写日志）不能覆盖外层正在渲染的内容
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return MessageTemplate.format("inner %s %d", "x", 1);
+            }
+        };
+        assertEquals("outer [inner x 1] end 2", MessageTemplate.format("outer [%s] end %d", nested, 2));
+        assertEquals("before inner x 1 after", MessageTemplate.format("before %s after", nested));
+        //外层结束后线程私有的builder仍然可以复用
+        assertSameAsStringFormat("%s-%s", "a", "b");
+    }
+
+    @Test
+    public void randomValues_matchStringFormat() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int intValue = random.nextInt();
+            long longValue = random.nextLong();
+            assertSameAsStringFormat("%d %x", intValue, intValue);
+            assertSameAsStringFormat("%d %x", longValue, longValue);
+        }
+    }
+}